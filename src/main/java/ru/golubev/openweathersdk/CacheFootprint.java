@@ -0,0 +1,51 @@
+package ru.golubev.openweathersdk;
+
+import lombok.Value;
+
+/**
+ * Memory footprint of a weather cache.
+ *
+ * <p>Sizes are estimates of retained memory computed from the cached entries.
+ * Use {@link #averageEntryBytes()} to turn a memory budget into
+ * {@link WeatherSdkConfigurer.CacheConfigurer#maxWeightBytes} or an entry count.</p>
+ *
+ * <p><b>Example usage:</b></p>
+ * <pre>{@code
+ * CacheFootprint footprint = client.cacheFootprint();
+ * log.info("{} entries, {} bytes, {} bytes per entry",
+ *     footprint.getEntryCount(),
+ *     footprint.getEstimatedBytes(),
+ *     footprint.averageEntryBytes());
+ * }</pre>
+ *
+ * @see WeatherClient#cacheFootprint()
+ * @see WeatherSdk#sharedCacheFootprint()
+ * @since 1.0
+ */
+@Value
+public class CacheFootprint {
+
+    /**
+     * Empty footprint of a cache without entries.
+     */
+    public static final CacheFootprint EMPTY = new CacheFootprint(0, 0);
+
+    /**
+     * Number of cached entries.
+     */
+    long entryCount;
+
+    /**
+     * Estimated memory held by all entries, in bytes.
+     */
+    long estimatedBytes;
+
+    /**
+     * Returns the average estimated size of one entry.
+     *
+     * @return bytes per entry, or 0 if the cache is empty
+     */
+    public long averageEntryBytes() {
+        return entryCount == 0 ? 0 : estimatedBytes / entryCount;
+    }
+}
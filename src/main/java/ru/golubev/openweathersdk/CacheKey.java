@@ -0,0 +1,108 @@
+package ru.golubev.openweathersdk;
+
+import com.github.benmanes.caffeine.cache.Interner;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+/**
+ * Composite cache key identifying a weather response by city, language and units.
+ *
+ * <p>The same city requested in different languages or unit systems yields different
+ * responses, so all three parts take part in equality. This lets a single shared
+ * cache serve clients with any combination of settings without mixing their data.</p>
+ *
+ * <p><b>Key characteristics:</b></p>
+ * <ul>
+ *   <li>Immutable with a hash code computed once at construction</li>
+ *   <li>Interned - equal keys resolve to one canonical instance</li>
+ *   <li>Weakly interned - unused keys are reclaimed by the garbage collector</li>
+ *   <li>Identity check short-circuits equality for interned instances</li>
+ * </ul>
+ *
+ * <p><b>Example usage:</b></p>
+ * <pre>{@code
+ * CacheKey key = CacheKey.of("London", SupportedLanguage.ENGLISH, Units.METRIC);
+ * CacheKey same = CacheKey.of("London", SupportedLanguage.ENGLISH, Units.METRIC);
+ *
+ * assert key == same;
+ * }</pre>
+ *
+ * @see WeatherCache
+ * @since 1.0
+ */
+@Getter
+@Accessors(fluent = true)
+public final class CacheKey {
+
+    /**
+     * Weak interner holding canonical key instances.
+     */
+    private static final Interner<CacheKey> INTERNER = Interner.newWeakInterner();
+
+    /**
+     * City name as passed by the caller.
+     */
+    private final String city;
+
+    /**
+     * Language for weather descriptions.
+     */
+    private final SupportedLanguage language;
+
+    /**
+     * Measurement units system.
+     */
+    private final Units units;
+
+    /**
+     * Precomputed hash code.
+     */
+    @Getter(AccessLevel.NONE)
+    private final int hash;
+
+    private CacheKey(String city, SupportedLanguage language, Units units) {
+        this.city = city;
+        this.language = language;
+        this.units = units;
+        this.hash = 31 * (31 * city.hashCode() + language.ordinal()) + units.ordinal();
+    }
+
+    /**
+     * Returns the canonical key for the given city, language and units.
+     *
+     * @param city the city name; must not be null
+     * @param language the language for descriptions; must not be null
+     * @param units the measurement system; must not be null
+     * @return interned key instance
+     * @throws NullPointerException if any argument is null
+     */
+    public static CacheKey of(String city, SupportedLanguage language, Units units) {
+        return INTERNER.intern(new CacheKey(city, language, units));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheKey)) {
+            return false;
+        }
+        CacheKey other = (CacheKey) o;
+        return hash == other.hash
+            && language == other.language
+            && units == other.units
+            && city.equals(other.city);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return city + "[" + language + ", " + units + "]";
+    }
+}
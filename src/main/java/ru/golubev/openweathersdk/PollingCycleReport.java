@@ -0,0 +1,50 @@
+package ru.golubev.openweathersdk;
+
+import java.time.Duration;
+import lombok.Value;
+
+/**
+ * Outcome of one polling cycle, reported once every refresh of the cycle has finished.
+ *
+ * @see WeatherSdkConfigurer#pollingListener
+ * @since 1.0
+ */
+@Value
+public class PollingCycleReport {
+
+    /**
+     * Time from the start of the first refresh of the cycle until its last refresh
+     * finished, or zero if no refresh was started. Refreshes are spread over the
+     * polling interval, so this is at most about one interval plus the time of the
+     * slowest refresh.
+     */
+    Duration duration;
+
+    /**
+     * Number of cities the cycle selected for refresh.
+     */
+    int scheduled;
+
+    /**
+     * Number of cities refreshed successfully.
+     */
+    int succeeded;
+
+    /**
+     * Number of cities whose refresh failed.
+     */
+    int failed;
+
+    /**
+     * Number of cities skipped because a refresh from an earlier cycle was still
+     * queued or running, because polling stopped, or because the client billed for
+     * the refresh stopped polling and no other client had budget left.
+     */
+    int skipped;
+
+    /**
+     * Number of recently requested cities left out of the cycle because their
+     * refreshes kept failing and they are backing off.
+     */
+    int backedOff;
+}
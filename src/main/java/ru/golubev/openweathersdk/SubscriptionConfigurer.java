@@ -0,0 +1,78 @@
+package ru.golubev.openweathersdk;
+
+import java.util.concurrent.Flow;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * Configuration of a weather change subscription created by {@link WeatherClient#subscribe}.
+ *
+ * <p>A refreshed response is published only if it differs materially from the last
+ * published one: a measurement changed by at least its delta, or the weather
+ * condition changed. Deltas are in the client's {@link Units}. Set a delta to
+ * {@link Double#POSITIVE_INFINITY} or {@link Integer#MAX_VALUE} to ignore the field.</p>
+ *
+ * <p><b>Example usage:</b></p>
+ * <pre>{@code
+ * client.subscribe("London", cfg -> cfg
+ *         .temperatureDelta(1.0)
+ *         .windSpeedDelta(Double.POSITIVE_INFINITY)
+ *         .conditionChanges(true))
+ *     .subscribe(subscriber);
+ * }</pre>
+ *
+ * @since 1.0
+ */
+@Accessors(fluent = true)
+@Getter
+@Setter
+@ToString
+public final class SubscriptionConfigurer {
+
+    /**
+     * Smallest change of the air temperature that is published.
+     *
+     * <p><b>Default:</b> 0.5</p>
+     */
+    private double temperatureDelta = 0.5;
+
+    /**
+     * Smallest change of the perceived temperature that is published.
+     *
+     * <p><b>Default:</b> 1.0</p>
+     */
+    private double feelsLikeDelta = 1.0;
+
+    /**
+     * Smallest change of the wind speed that is published.
+     *
+     * <p><b>Default:</b> 1.0</p>
+     */
+    private double windSpeedDelta = 1.0;
+
+    /**
+     * Smallest change of the visibility, in meters, that is published.
+     *
+     * <p><b>Default:</b> 1000</p>
+     */
+    private int visibilityDelta = 1000;
+
+    /**
+     * Publish responses whose weather condition group or description changed.
+     *
+     * <p><b>Default:</b> true</p>
+     */
+    private boolean conditionChanges = true;
+
+    /**
+     * Maximum number of responses buffered for a subscriber that has not requested them yet.
+     *
+     * <p>Responses published while the buffer of a slow subscriber is full are dropped
+     * for that subscriber only; it receives the later ones once it catches up.</p>
+     *
+     * <p><b>Default:</b> {@link Flow#defaultBufferSize()}</p>
+     */
+    private int bufferCapacity = Flow.defaultBufferSize();
+}
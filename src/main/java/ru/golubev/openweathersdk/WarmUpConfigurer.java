@@ -0,0 +1,71 @@
+package ru.golubev.openweathersdk;
+
+import java.util.function.Consumer;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * Configuration of a cache warm-up started by {@link WeatherClient#warmUp}.
+ *
+ * <p><b>Example usage:</b></p>
+ * <pre>{@code
+ * client.warmUp(cities, cfg -> cfg
+ *         .concurrency(16)
+ *         .maxRequestsPerSecond(50)
+ *         .targetFill(0.95)
+ *         .progressListener(p -> log.info("Warm-up {}/{}", p.completed(), p.getTotal())))
+ *     .join();
+ * }</pre>
+ *
+ * @see WarmUpProgress
+ * @since 1.0
+ */
+@Accessors(fluent = true)
+@Getter
+@Setter
+@ToString
+public final class WarmUpConfigurer {
+
+    /**
+     * Maximum number of cities loaded at the same time.
+     *
+     * <p><b>Default:</b> 8</p>
+     */
+    private int concurrency = 8;
+
+    /**
+     * Maximum number of API calls started per second.
+     *
+     * <p>Cities that are already cached do not count against the limit. Keep it
+     * below the rate limit of the API key, otherwise the excess calls fail with
+     * {@link ru.golubev.openweathersdk.exception.TooManyRequests}. Zero disables
+     * the limit.</p>
+     *
+     * <p><b>Default:</b> 0 (only {@link #concurrency} limits the rate)</p>
+     */
+    private double maxRequestsPerSecond = 0;
+
+    /**
+     * Fraction of the cities that must be loaded for the warm-up to be ready.
+     *
+     * <p>The future returned by {@link WeatherClient#warmUp} completes as soon as
+     * this fraction of the list is cached, while the remaining cities keep loading
+     * in the background. Set it below 1 to tolerate unknown cities and transient
+     * failures.</p>
+     *
+     * <p><b>Default:</b> 1.0 (every city)</p>
+     */
+    private double targetFill = 1.0;
+
+    /**
+     * Receives the progress after every finished city.
+     *
+     * <p>Called on the threads completing the loads, possibly concurrently.
+     * Must not block.</p>
+     *
+     * <p><b>Default:</b> null (no progress reports)</p>
+     */
+    private Consumer<WarmUpProgress> progressListener;
+}
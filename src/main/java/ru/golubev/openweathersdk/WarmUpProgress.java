@@ -0,0 +1,56 @@
+package ru.golubev.openweathersdk;
+
+import lombok.Value;
+
+/**
+ * Progress of a cache warm-up.
+ *
+ * @see WeatherClient#warmUp
+ * @see WarmUpConfigurer#progressListener
+ * @since 1.0
+ */
+@Value
+public class WarmUpProgress {
+
+    /**
+     * Number of cities in the warm-up list.
+     */
+    int total;
+
+    /**
+     * Number of cities loaded into the cache or found there already.
+     */
+    int loaded;
+
+    /**
+     * Number of cities whose load failed.
+     */
+    int failed;
+
+    /**
+     * Returns the number of finished cities.
+     *
+     * @return loaded and failed cities
+     */
+    public int completed() {
+        return loaded + failed;
+    }
+
+    /**
+     * Returns the loaded fraction of the list.
+     *
+     * @return loaded cities divided by total, or 1 for an empty list
+     */
+    public double fill() {
+        return total == 0 ? 1.0 : (double) loaded / total;
+    }
+
+    /**
+     * Checks whether every city has finished.
+     *
+     * @return true if no city is pending
+     */
+    public boolean isFinished() {
+        return completed() == total;
+    }
+}
@@ -0,0 +1,152 @@
+package ru.golubev.openweathersdk;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+
+/**
+ * Service provider interface of the store holding cached weather responses.
+ *
+ * <p>Every client cache, and the SDK's shared cache, keeps its responses in one
+ * {@code WeatherCache}. The SDK adds the not-found memory, the stale-if-error
+ * grace area, the disk tier and snapshots on top of it. A custom implementation,
+ * such as a specialized store, a tiered cache or an instrumented wrapper, is set
+ * with {@link WeatherSdkConfigurer.CacheConfigurer#implementation}.</p>
+ *
+ * <p><b>Built-in implementations:</b></p>
+ * <ul>
+ *   <li>Caffeine - the default on-heap cache, supports background refresh</li>
+ *   <li>Off-heap - fixed-width records in direct memory, enabled by
+ *       {@link WeatherSdkConfigurer.CacheConfigurer#offHeap}</li>
+ * </ul>
+ *
+ * <p><b>Implementation requirements:</b></p>
+ * <ul>
+ *   <li>All methods are thread-safe</li>
+ *   <li>Concurrent {@link #get} calls for one key share a single in-flight future</li>
+ *   <li>Futures that complete exceptionally are removed, so the next call retries</li>
+ *   <li>Expiration and size bounds are the implementation's own; the SDK's TTL and
+ *       size settings only configure the built-in implementations</li>
+ * </ul>
+ *
+ * <p><b>Example usage:</b></p>
+ * <pre>{@code
+ * WeatherSdkConfigurer configurer = new WeatherSdkConfigurer()
+ *     .apiKey("your-api-key")
+ *     .cache(cfg -> cfg.implementation(new InstrumentedCache(delegate)));
+ * }</pre>
+ *
+ * @see CacheKey
+ * @see WeatherCacheStats
+ * @since 1.0
+ */
+public interface WeatherCache {
+
+    /**
+     * Visitor of stored entries.
+     */
+    @FunctionalInterface
+    interface EntryConsumer {
+
+        /**
+         * Accepts one stored entry.
+         *
+         * @param key the cache key
+         * @param value the stored response
+         * @param remainingMillis time until the entry expires
+         */
+        void accept(CacheKey key, WeatherResponse value, long remainingMillis);
+    }
+
+    /**
+     * Returns the stored or in-flight response for the key.
+     *
+     * <p>A present key is recorded as a hit. Absent keys are not recorded as
+     * misses, since the SDK follows up with {@link #get}.</p>
+     *
+     * @param key the cache key
+     * @return the cached future, or null if the key is not cached
+     */
+    CompletableFuture<WeatherResponse> getIfPresent(CacheKey key);
+
+    /**
+     * Returns the stored future for the key, starting a load if there is none.
+     *
+     * <p>Records a hit, or a miss followed by the outcome of the load.</p>
+     *
+     * @param key the cache key
+     * @param loader starts the load for the key on the given executor
+     * @return future shared by all callers waiting for the key
+     */
+    CompletableFuture<WeatherResponse> get(CacheKey key,
+                                           BiFunction<CacheKey, Executor, CompletableFuture<WeatherResponse>> loader);
+
+    /**
+     * Stores a response with the cache's regular lifetime, replacing any present one.
+     *
+     * @param key the cache key
+     * @param value the response
+     */
+    void put(CacheKey key, WeatherResponse value);
+
+    /**
+     * Stores a response with the given lifetime unless the key already has one.
+     *
+     * <p>Used to restore snapshots, so restored entries keep their remaining lifetime.</p>
+     *
+     * @param key the cache key
+     * @param value the response
+     * @param lifetimeMillis time until the entry expires
+     */
+    void putIfAbsent(CacheKey key, WeatherResponse value, long lifetimeMillis);
+
+    /**
+     * Returns a live view of the stored keys.
+     *
+     * @return set of cached keys
+     */
+    Set<CacheKey> keys();
+
+    /**
+     * Visits all completed, unexpired entries.
+     *
+     * @param consumer receives each entry with its remaining lifetime
+     */
+    void forEach(EntryConsumer consumer);
+
+    /**
+     * Discards the entry for the key without reporting it as evicted.
+     *
+     * @param key the cache key
+     */
+    void invalidate(CacheKey key);
+
+    /**
+     * Discards all entries without reporting them as evicted.
+     */
+    void invalidateAll();
+
+    /**
+     * Returns the statistics of the cache.
+     *
+     * @return cumulative counters and the current footprint
+     */
+    WeatherCacheStats stats();
+
+    /**
+     * Estimates the memory held by completed entries.
+     *
+     * @return entry count and estimated bytes, by default taken from {@link #stats()}
+     */
+    default CacheFootprint footprint() {
+        return stats().getFootprint();
+    }
+
+    /**
+     * Performs pending maintenance operations, such as expiring old entries.
+     */
+    default void cleanUp() {
+    }
+}
@@ -0,0 +1,104 @@
+package ru.golubev.openweathersdk;
+
+import java.time.Duration;
+import lombok.Value;
+
+/**
+ * Snapshot of weather cache statistics.
+ *
+ * <p>Counters are cumulative since the cache was created. Compare two snapshots
+ * taken some time apart to get rates for that period.</p>
+ *
+ * <p><b>Counted events:</b></p>
+ * <ul>
+ *   <li>Hit - a request answered from the cache, including joins to an in-flight load</li>
+ *   <li>Miss - a request that started a load</li>
+ *   <li>Load - a request to the API or the disk tier, including background refreshes</li>
+ *   <li>Eviction - an entry removed because of the size limit or because it expired</li>
+ * </ul>
+ *
+ * <p><b>Example usage:</b></p>
+ * <pre>{@code
+ * WeatherCacheStats stats = client.cacheStats();
+ * log.info("hit rate {}, average load {} ms, {} evicted by size",
+ *     stats.hitRate(),
+ *     stats.averageLoadTime().toMillis(),
+ *     stats.getSizeEvictionCount());
+ * }</pre>
+ *
+ * @see WeatherClient#cacheStats()
+ * @see WeatherSdk#sharedCacheStats()
+ * @since 1.0
+ */
+@Value
+public class WeatherCacheStats {
+
+    /**
+     * Number of requests answered from the cache.
+     */
+    long hitCount;
+
+    /**
+     * Number of requests that required a load.
+     */
+    long missCount;
+
+    /**
+     * Number of loads that completed with a response.
+     */
+    long loadSuccessCount;
+
+    /**
+     * Number of loads that failed.
+     */
+    long loadFailureCount;
+
+    /**
+     * Total time spent in loads, in nanoseconds.
+     */
+    long totalLoadTimeNanos;
+
+    /**
+     * Number of entries evicted because the cache reached its size or weight limit.
+     */
+    long sizeEvictionCount;
+
+    /**
+     * Number of entries removed because they expired.
+     */
+    long expirationCount;
+
+    /**
+     * Current entry count and estimated memory of the cache.
+     */
+    CacheFootprint footprint;
+
+    /**
+     * Returns the total number of requests.
+     *
+     * @return hits plus misses
+     */
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * Returns the fraction of requests answered from the cache.
+     *
+     * @return hit rate between 0 and 1, or 1 if there were no requests
+     */
+    public double hitRate() {
+        long requests = requestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    /**
+     * Returns the average duration of a load.
+     *
+     * @return average load time, or {@link Duration#ZERO} if nothing was loaded
+     */
+    public Duration averageLoadTime() {
+        long loads = loadSuccessCount + loadFailureCount;
+        return loads == 0 ? Duration.ZERO : Duration.ofNanos(totalLoadTimeNanos / loads);
+    }
+}
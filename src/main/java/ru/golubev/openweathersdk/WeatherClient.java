@@ -1,6 +1,11 @@
 package ru.golubev.openweathersdk;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
 import ru.golubev.openweathersdk.model.WeatherResponse;
 
 /**
@@ -41,6 +46,7 @@ public interface WeatherClient extends AutoCloseable {
      *
      * @param city city name for weather data lookup
      * @return weather response containing current conditions
+     * @throws IllegalArgumentException if the city starts with the reserved {@code geohash:} prefix
      * @see ru.golubev.openweathersdk.internal.WeatherClientImpl#getWeather(String) for implementation details
      */
     WeatherResponse getWeather(String city);
@@ -50,7 +56,103 @@ public interface WeatherClient extends AutoCloseable {
      *
      * @param city city name for weather data lookup
      * @return CompletableFuture that will contain weather response when complete
+     * @throws IllegalArgumentException if the city starts with the reserved {@code geohash:} prefix
      * @see ru.golubev.openweathersdk.internal.WeatherClientImpl#getWeatherAsync(String) for implementation details
      */
     CompletableFuture<WeatherResponse> getWeatherAsync(String city);
+
+    /**
+     * Retrieves current weather data for specified coordinates synchronously.
+     *
+     * @param latitude latitude in degrees, from -90 to 90
+     * @param longitude longitude in degrees, from -180 to 180
+     * @return weather response for the geohash cell containing the coordinates
+     * @see WeatherSdkConfigurer.CacheConfigurer#geohashPrecision for cell sizes
+     */
+    WeatherResponse getWeather(double latitude, double longitude);
+
+    /**
+     * Retrieves current weather data for specified coordinates asynchronously.
+     *
+     * @param latitude latitude in degrees, from -90 to 90
+     * @param longitude longitude in degrees, from -180 to 180
+     * @return CompletableFuture that will contain weather response when complete
+     * @see WeatherSdkConfigurer.CacheConfigurer#geohashPrecision for cell sizes
+     */
+    CompletableFuture<WeatherResponse> getWeatherAsync(double latitude, double longitude);
+
+    /**
+     * Loads the given cities into the cache, for example before a service takes traffic.
+     *
+     * <p>The returned future completes once {@link WarmUpConfigurer#targetFill} of the
+     * cities is cached, so a readiness check can wait for it; the remaining cities keep
+     * loading in the background. It completes exceptionally with
+     * {@link IllegalStateException} if the target cannot be reached.</p>
+     *
+     * @param cities city names to load
+     * @param customizer adjusts concurrency, rate limit, target fill and progress reporting
+     * @return future completed with the progress when the target fill is reached
+     * @throws IllegalArgumentException if the configuration is invalid
+     * @see ru.golubev.openweathersdk.internal.WeatherClientImpl#warmUp(Collection, Consumer) for implementation details
+     */
+    CompletableFuture<WarmUpProgress> warmUp(Collection<String> cities, Consumer<WarmUpConfigurer> customizer);
+
+    /**
+     * Loads the cities listed in a file into the cache.
+     *
+     * <p>The file is read as UTF-8 with one city per line. Blank lines and lines
+     * starting with {@code #} are skipped.</p>
+     *
+     * @param file the city list
+     * @param customizer adjusts concurrency, rate limit, target fill and progress reporting
+     * @return future completed with the progress when the target fill is reached
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the configuration is invalid
+     * @see #warmUp(Collection, Consumer)
+     */
+    CompletableFuture<WarmUpProgress> warmUp(Path file, Consumer<WarmUpConfigurer> customizer) throws IOException;
+
+    /**
+     * Subscribes to material changes of the weather in a city.
+     *
+     * <p>The returned publisher emits a refreshed response whenever it differs from
+     * the last emitted one by more than the configured deltas; the first refresh
+     * after the subscription starts is always emitted. Subscribers of the same city
+     * and thresholds share one stream fed by the cache, so they add no upstream calls.
+     * Each subscriber controls its pace with {@link Flow.Subscription#request(long)};
+     * responses beyond its buffer are skipped for it rather than delaying others.</p>
+     *
+     * <p>Responses arrive whenever the cache is refreshed. In
+     * {@link WeatherSdkConfigurer.UpdateMode#POLLING} mode subscribed cities are
+     * refreshed every polling cycle ahead of other cities; in other modes they are
+     * refreshed by lookups and background reloads. Subscribers are completed when
+     * the cache is closed.</p>
+     *
+     * @param city name of the city
+     * @param customizer adjusts the change thresholds and the subscriber buffer
+     * @return publisher of materially changed responses
+     * @throws IllegalArgumentException if the city is blank or reserved, or the configuration is invalid
+     * @see ru.golubev.openweathersdk.internal.WeatherClientImpl#subscribe(String, Consumer) for implementation details
+     */
+    Flow.Publisher<WeatherResponse> subscribe(String city, Consumer<SubscriptionConfigurer> customizer);
+
+    /**
+     * Returns the estimated memory footprint of the cache used by this client.
+     *
+     * <p>For clients using the shared cache, this is the footprint of the shared cache.</p>
+     *
+     * @return entry count and estimated bytes of the cache
+     * @see CacheFootprint#averageEntryBytes()
+     */
+    CacheFootprint cacheFootprint();
+
+    /**
+     * Returns statistics of the cache used by this client.
+     *
+     * <p>For clients using the shared cache, these are the statistics of the shared cache.</p>
+     *
+     * @return hit, miss, load and eviction counters with the current footprint
+     * @see WeatherCacheStats#hitRate()
+     */
+    WeatherCacheStats cacheStats();
 }
@@ -81,6 +81,22 @@ public interface WeatherSdk extends AutoCloseable {
      */
     void deleteClient(String apiKey);
 
+    /**
+     * Returns the estimated memory footprint of the shared cache.
+     *
+     * @return entry count and estimated bytes of the shared cache
+     * @see OpenWeatherSdk#sharedCacheFootprint() for implementation details
+     */
+    CacheFootprint sharedCacheFootprint();
+
+    /**
+     * Returns statistics of the shared cache.
+     *
+     * @return hit, miss, load and eviction counters with the current footprint
+     * @see OpenWeatherSdk#sharedCacheStats() for implementation details
+     */
+    WeatherCacheStats sharedCacheStats();
+
     /**
      * Returns the singleton SDK instance.
      *
@@ -1,5 +1,7 @@
 package ru.golubev.openweathersdk;
 
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
@@ -58,7 +60,15 @@ public final class WeatherSdkConfigurer {
          * Data is automatically fetched at regular intervals.
          * Better for applications requiring frequent, fresh data.
          */
-        POLLING;
+        POLLING,
+
+        /**
+         * Cached data is reloaded in the background when it is read after
+         * {@link CacheConfigurer#refreshAheadRatio} of its TTL has passed.
+         * Readers keep receiving the current value while the reload runs,
+         * and entries that are not read simply expire.
+         */
+        REFRESH_AHEAD;
     }
 
     /**
@@ -80,12 +90,56 @@ public final class WeatherSdkConfigurer {
     /**
      * Interval for automatic data polling in POLLING mode.
      *
-     * <p>Ignored when {@link #updateMode} is {@link UpdateMode#ON_DEMAND}.</p>
+     * <p>Ignored unless {@link #updateMode} is {@link UpdateMode#POLLING}.</p>
      *
      * <p><b>Default:</b> 5 minutes</p>
      */
     private Duration pollingInterval = Duration.ofMinutes(5);
 
+    /**
+     * Maximum number of API calls spent on one polling cycle.
+     *
+     * <p>Each cycle refreshes the cached cities that were requested since the
+     * previous cycles, most requested first, until the budget is spent. Cities that
+     * are not requested anymore are not refreshed and simply expire. Zero refreshes
+     * every recently requested city.</p>
+     *
+     * <p>Clients polling the shared cache pool their budgets. Each refresh is sent
+     * with the API key of one of them, in proportion to their budgets, and no
+     * client is charged more than its own budget per cycle.</p>
+     *
+     * <p>Ignored unless {@link #updateMode} is {@link UpdateMode#POLLING}.</p>
+     *
+     * <p><b>Default:</b> 0 (no limit)</p>
+     */
+    private int pollingBudget = 0;
+
+    /**
+     * Maximum number of polling refreshes running at the same time.
+     *
+     * <p>Refreshes that come due while this many are running wait in a queue, so a
+     * slow upstream delays polling instead of piling requests up in the HTTP client.
+     * A city still queued or running from an earlier cycle is skipped by the next one.
+     * Polling clients of the shared cache run at the highest of their limits.</p>
+     *
+     * <p>Ignored unless {@link #updateMode} is {@link UpdateMode#POLLING}.</p>
+     *
+     * <p><b>Default:</b> 8</p>
+     */
+    private int pollingConcurrency = 8;
+
+    /**
+     * Receives a report after every polling cycle of the client's cache has finished.
+     *
+     * <p>Called on the thread completing the last refresh of the cycle. Must not block.
+     * Polling clients of the shared cache each receive the reports of the shared cycles.</p>
+     *
+     * <p>Ignored unless {@link #updateMode} is {@link UpdateMode#POLLING}.</p>
+     *
+     * <p><b>Default:</b> null (no reports)</p>
+     */
+    private Consumer<PollingCycleReport> pollingListener;
+
     /**
      * Language for weather descriptions and messages.
      *
@@ -115,7 +169,8 @@ public final class WeatherSdkConfigurer {
      * Use shared cache instance across multiple clients.
      *
      * <p>When true, all clients with this setting will share the same cache instance.
-     * Cannot be used with {@link UpdateMode#POLLING} mode.</p>
+     * Cannot be used with {@link UpdateMode#REFRESH_AHEAD} mode. Polling clients sharing
+     * the cache share one polling schedule.</p>
      *
      * <p><b>Default:</b> true</p>
      */
@@ -213,6 +268,236 @@ public final class WeatherSdkConfigurer {
          */
         private long maxSize = 10;
 
+        /**
+         * Memory budget of the cache in bytes.
+         *
+         * <p>When positive, the cache is bounded by the estimated retained size of its
+         * entries instead of {@link #maxSize}. Entry sizes vary with city name length
+         * and description language; use the cache footprint of a running client to
+         * see the actual average. With {@link #offHeap}, the budget fixes the entry
+         * capacity, estimated from the record, key, index and city name of an entry,
+         * and the direct buffer is sized for that capacity.</p>
+         *
+         * <p><b>Default:</b> 0 (bounded by {@link #maxSize})</p>
+         *
+         * @see ru.golubev.openweathersdk.CacheFootprint
+         */
+        private long maxWeightBytes = 0;
+
+        /**
+         * Fraction of {@link #ttl} after which a read triggers a background reload.
+         *
+         * <p>Only used in {@link UpdateMode#REFRESH_AHEAD} mode. Must be greater than 0
+         * and less than 1. Lower values keep data fresher at the cost of more API calls.</p>
+         *
+         * <p><b>Default:</b> 0.8</p>
+         */
+        private double refreshAheadRatio = 0.8;
+
+        /**
+         * Window after {@link #ttl} during which expired entries are still served.
+         *
+         * <p>The first read of an entry older than its TTL returns the stale value
+         * immediately and starts one background revalidation for the key. Entries
+         * are evicted once they are older than TTL plus this window.</p>
+         *
+         * <p><b>Default:</b> {@link Duration#ZERO} (disabled)</p>
+         */
+        private Duration staleWhileRevalidate = Duration.ZERO;
+
+        /**
+         * Maximum age past expiry for which a value is kept as an error fallback.
+         *
+         * <p>Expired entries are moved to a grace area holding up to {@link #maxSize}
+         * entries. If reloading a key then fails with a server error, rate limiting
+         * or a network failure, the grace value is returned marked as stale instead
+         * of the exception. The stale value is then served for a few seconds before
+         * the API is tried again, so an outage does not multiply upstream calls.</p>
+         *
+         * <p><b>Default:</b> {@link Duration#ZERO} (disabled)</p>
+         */
+        private Duration staleIfError = Duration.ZERO;
+
+        /**
+         * How long a city answered with 404 Not Found is remembered.
+         *
+         * <p>While remembered, requests for the city fail immediately with a
+         * {@link ru.golubev.openweathersdk.exception.NotFoundException} without a stack
+         * trace, instead of calling the API again. Applies to every language and units
+         * of the city name. {@link Duration#ZERO} disables the memory.</p>
+         *
+         * <p><b>Default:</b> 1 minute</p>
+         */
+        private Duration notFoundTtl = Duration.ofMinutes(1);
+
+        /**
+         * Maximum number of remembered unknown city names.
+         *
+         * <p><b>Default:</b> 1000</p>
+         */
+        private int notFoundMaxSize = 1000;
+
+        /**
+         * Maximum number of learned city aliases.
+         *
+         * <p>City queries are always normalized, so case and whitespace variants share
+         * one entry. In addition, a query answered with a differently named city, such
+         * as a local name or a transliteration, is remembered as an alias of the
+         * returned name, and later lookups of either spelling share one entry. Zero
+         * disables alias learning.</p>
+         *
+         * <p><b>Default:</b> 10000</p>
+         */
+        private int aliasMaxSize = 10_000;
+
+        /**
+         * Directory of an optional disk tier below the in-memory cache.
+         *
+         * <p>Entries evicted because the cache reached {@link #maxSize} are written to
+         * an append-only file in this directory, and cache misses read them back before
+         * calling the API. This allows caching far more locations than fit in memory.
+         * Stored entries are kept when the cache is closed and reused by the next cache
+         * opened on the directory. Each cache needs its own directory.</p>
+         *
+         * <p><b>Default:</b> null (disabled)</p>
+         */
+        private Path diskDirectory;
+
+        /**
+         * Maximum time entries stay in the disk tier, counted from when they were written to disk.
+         *
+         * <p>Spilled entries keep the expiration time they had in memory, so a response
+         * read back from disk expires when it would have expired had it never left
+         * memory. This setting can only shorten that lifetime.</p>
+         *
+         * <p>Ignored unless {@link #diskDirectory} is set.</p>
+         *
+         * <p><b>Default:</b> 1 hour</p>
+         */
+        private Duration diskTtl = Duration.ofHours(1);
+
+        /**
+         * File used to keep cached entries across restarts.
+         *
+         * <p>When set, the cache is saved to this file when it is closed, either by
+         * closing its client or, for the shared cache, by closing the SDK. A cache
+         * created with the same path loads the file, and entries keep the expiration
+         * time they had when saved. Each cache needs its own file.</p>
+         *
+         * <p><b>Default:</b> null (disabled)</p>
+         */
+        private Path snapshotPath;
+
+        /**
+         * Address of a Redis-compatible server used as a cache tier shared by several processes.
+         *
+         * <p>On a miss of the in-memory cache and the disk tier, the response is looked
+         * up on the server before the API is called, and responses loaded from the API
+         * are written to it without waiting. Concurrent lookups are batched into one
+         * {@code MGET}. A slow or unreachable server counts as a miss.</p>
+         *
+         * <p><b>Default:</b> null (disabled)</p>
+         */
+        private InetSocketAddress remoteAddress;
+
+        /**
+         * Lifetime of entries written to the remote tier.
+         *
+         * <p>An entry read from the server is cached locally only for the rest of its
+         * local lifetime counted from when it was loaded from the API, so its age on
+         * the server is not served again. Ignored unless {@link #remoteAddress} is set.</p>
+         *
+         * <p><b>Default:</b> 5 minutes</p>
+         */
+        private Duration remoteTtl = Duration.ofMinutes(5);
+
+        /**
+         * Time after which a pending remote lookup counts as a miss and the API is called.
+         *
+         * <p><b>Default:</b> 100 milliseconds</p>
+         */
+        private Duration remoteTimeout = Duration.ofMillis(100);
+
+        /**
+         * Prefix of all keys written to the remote tier.
+         *
+         * <p><b>Default:</b> {@code openweather:}</p>
+         */
+        private String remoteKeyPrefix = "openweather:";
+
+        /**
+         * Store cached responses outside the Java heap.
+         *
+         * <p>When true, responses are kept as fixed-width records in direct memory
+         * and rebuilt on every read, so large caches do not add to garbage
+         * collection pauses. Memory for {@link #maxSize} entries is reserved up front.
+         * Cannot be combined with {@link UpdateMode#REFRESH_AHEAD} or
+         * {@link #staleWhileRevalidate}.</p>
+         *
+         * <p><b>Default:</b> false</p>
+         */
+        private boolean offHeap = false;
+
+        /**
+         * Custom store for cached responses.
+         *
+         * <p>When set, this {@link WeatherCache} is used instead
+         * of the built-in Caffeine or off-heap store. Its own expiration and size bounds
+         * apply; {@link #ttl}, {@link #maxSize}, {@link #maxWeightBytes}, {@link #offHeap}
+         * and {@link #observationAware} are ignored. The instance is invalidated when
+         * the owning client or SDK closes, so it should not be passed to more than one
+         * configuration. Cannot be combined with {@link UpdateMode#REFRESH_AHEAD},
+         * {@link #staleWhileRevalidate}, {@link #staleIfError}, {@link #diskDirectory} or
+         * {@link #remoteAddress}.</p>
+         *
+         * <p><b>Default:</b> null (built-in store)</p>
+         */
+        private WeatherCache implementation;
+
+        /**
+         * Expire entries based on the observation time of the cached data.
+         *
+         * <p>When true, an entry lives until just after the next observation of its
+         * city is expected, learned from how often the observation time of the city's
+         * responses advances. Data that was already old when fetched expires sooner,
+         * and cities are not refetched before new data can exist. {@link #ttl} is the
+         * longest lifetime and {@link #minTtl} the shortest. Cannot be combined with
+         * {@link UpdateMode#REFRESH_AHEAD} or {@link #staleWhileRevalidate}.</p>
+         *
+         * <p><b>Default:</b> false (fixed {@link #ttl})</p>
+         */
+        private boolean observationAware = false;
+
+        /**
+         * Shortest lifetime of an entry with {@link #observationAware} expiry.
+         *
+         * <p>Used when the next observation of a city is already overdue, so the
+         * city is checked again after this delay.</p>
+         *
+         * <p><b>Default:</b> 1 minute</p>
+         */
+        private Duration minTtl = Duration.ofMinutes(1);
+
+        /**
+         * Geohash precision of the cells that coordinate lookups are cached by.
+         *
+         * <p>Coordinates are snapped to a geohash cell and all lookups within one cell
+         * share a cached response, fetched for the cell's center. Larger values give
+         * smaller cells, so responses match the requested point more closely but are
+         * shared less.</p>
+         *
+         * <p><b>Approximate cell size by precision:</b></p>
+         * <ul>
+         *   <li>4 - 39 x 19.5 km</li>
+         *   <li>5 - 4.9 x 4.9 km</li>
+         *   <li>6 - 1.2 x 0.61 km</li>
+         *   <li>7 - 153 x 153 m</li>
+         * </ul>
+         *
+         * <p><b>Default:</b> 5, must be between 1 and 12</p>
+         */
+        private int geohashPrecision = 5;
+
     }
 
     /**
@@ -270,6 +555,45 @@ public final class WeatherSdkConfigurer {
          */
         private ExecutorService executor;
 
+        /**
+         * Directory of an optional on-disk HTTP response cache.
+         *
+         * <p>Sits below the response cache of the clients: a client cache miss for a
+         * response that is still fresh on disk is answered without an upstream call, and
+         * a stale one is revalidated with a conditional request if the API returned an
+         * {@code ETag} or {@code Last-Modified} header. Each HTTP client needs its own
+         * directory.</p>
+         *
+         * <p><b>Security:</b> cache entries store the full request URL, including the
+         * {@code appid} query parameter, so the API key is written to this directory in
+         * plaintext. Use a directory readable only by the application.</p>
+         *
+         * <p><b>Default:</b> null (disabled)</p>
+         */
+        private Path cacheDirectory;
+
+        /**
+         * Maximum size of the HTTP response cache on disk.
+         *
+         * <p>Ignored unless {@link #cacheDirectory} is set.</p>
+         *
+         * <p><b>Default:</b> 10 MiB</p>
+         */
+        private long cacheMaxBytes = 10L * 1024 * 1024;
+
+        /**
+         * Freshness lifetime of cached HTTP responses without {@code Cache-Control}
+         * or {@code Expires} headers.
+         *
+         * <p>Without it such responses are stale as soon as they are stored and
+         * every call goes upstream. Should not exceed how long the weather data
+         * stays current. Rounded up to whole seconds. Ignored unless
+         * {@link #cacheDirectory} is set.</p>
+         *
+         * <p><b>Default:</b> {@link Duration#ZERO} (follow response headers only)</p>
+         */
+        private Duration heuristicFreshness = Duration.ZERO;
+
     }
 
 }
@@ -31,4 +31,18 @@ public class NotFoundException extends WeatherApiException {
     public NotFoundException(String status, String message) {
         super(404, status, message);
     }
+
+    /**
+     * Constructs the exception optionally without a stack trace.
+     *
+     * <p>Used for answers from the SDK's cache of unknown cities, which rethrows one
+     * shared instance per city instead of calling the API again.</p>
+     *
+     * @param status HTTP status text or API error status
+     * @param message descriptive error message from API
+     * @param writableStackTrace whether the stack trace is captured
+     */
+    public NotFoundException(String status, String message, boolean writableStackTrace) {
+        super(404, status, message, writableStackTrace);
+    }
 }
\ No newline at end of file
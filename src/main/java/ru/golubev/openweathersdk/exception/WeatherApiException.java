@@ -80,6 +80,26 @@ public class WeatherApiException extends RuntimeException {
         this.message = message;
     }
 
+    /**
+     * Constructs a new WeatherApiException with API error details and optionally
+     * without a stack trace.
+     *
+     * <p>Exceptions without a stack trace and with suppression disabled are cheap to
+     * create and immutable, so a single instance can be rethrown to many callers.</p>
+     *
+     * @param code HTTP status code from API response
+     * @param status HTTP status text or API error status
+     * @param message descriptive error message from API
+     * @param writableStackTrace whether the stack trace is captured
+     */
+    protected WeatherApiException(int code, String status, String message, boolean writableStackTrace) {
+        super(String.format("Weather API error: code=%d, status=%s, message=%s", code, status, message),
+            null, false, writableStackTrace);
+        this.code = code;
+        this.status = status;
+        this.message = message;
+    }
+
     /**
      * Constructs a new WeatherApiException with a cause.
      *
@@ -1,8 +1,21 @@
 package ru.golubev.openweathersdk.internal;
 
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+import lombok.RequiredArgsConstructor;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.WeatherCache;
 import ru.golubev.openweathersdk.WeatherSdkConfigurer.CacheConfigurer;
+import ru.golubev.openweathersdk.WeatherSdkConfigurer.UpdateMode;
+import ru.golubev.openweathersdk.exception.NotFoundException;
+import ru.golubev.openweathersdk.model.WeatherResponse;
 
 /**
  * Factory class for creating configured cache instances.
@@ -17,15 +30,28 @@ import ru.golubev.openweathersdk.WeatherSdkConfigurer.CacheConfigurer;
  *   <li>Size-bound eviction (LRU policy)</li>
  *   <li>Thread-safe operations</li>
  *   <li>High performance concurrent access</li>
+ *   <li>Values held as futures, so in-flight loads are shared per key</li>
+ *   <li>Optional refresh-ahead reloads</li>
+ *   <li>Optional stale-while-revalidate window past TTL</li>
+ *   <li>Optional stale-if-error grace area for expired entries</li>
+ *   <li>Optional disk tier for entries evicted by size</li>
+ *   <li>Optional remote tier shared by several processes</li>
+ *   <li>Optional snapshot restored on creation and written on close</li>
+ *   <li>Optional off-heap storage of cached responses</li>
+ *   <li>Optional expiry following each city's observation cadence</li>
+ *   <li>Short-lived memory of cities not found by the API</li>
+ *   <li>Custom {@link WeatherCache} implementations in place of the built-in stores</li>
+ *   <li>Hit, miss, load and eviction statistics</li>
  * </ul>
  *
  * <p><b>Example usage:</b></p>
  * <pre>{@code
  * CacheConfigurer config = new CacheConfigurer()
  *     .ttl(Duration.ofMinutes(15))
+ *     .staleWhileRevalidate(Duration.ofMinutes(5))
  *     .maxSize(100);
  *
- * Cache<String, WeatherResponse> cache = CacheFactory.create(config);
+ * ResponseCache cache = CacheFactory.create(config, loader);
  * }</pre>
  *
  * @see CacheConfigurer
@@ -34,19 +60,29 @@ import ru.golubev.openweathersdk.WeatherSdkConfigurer.CacheConfigurer;
  */
 class CacheFactory {
 
+    /**
+     * How long a stale value substituted for a failed load is served before the
+     * API is tried again.
+     */
+    static final Duration STALE_RETRY_INTERVAL = Duration.ofSeconds(5);
+
     /**
      * Creates a configured cache instance based on the provided configuration.
      *
-     * @param <K> the type of cache keys (typically String for city names)
-     * @param <V> the type of cache values (typically WeatherResponse)
-     * @param configurer the cache configuration specifying TTL and size limits
-     * @return configured Cache instance ready for use
-     * @throws NullPointerException if configurer is null
+     * @param configurer the cache configuration specifying TTL, size limits and staleness windows
+     * @param loader the loader used to revalidate entries in the background
+     * @return configured ResponseCache instance ready for use
+     * @throws NullPointerException if configurer or loader is null
+     * @throws IllegalArgumentException if the staleness window is negative
      *
      * <p><b>Configuration applied:</b></p>
      * <ul>
-     *   <li>{@code expireAfterWrite(configurer.ttl())} - entries expire after TTL</li>
+     *   <li>{@code expireAfter(ttl + staleWhileRevalidate)} - entries expire after TTL
+     *       plus the staleness window</li>
+     *   <li>{@code refreshAfterWrite(ttl)} - only with a staleness window; the first read of
+     *       an expired entry returns it and revalidates it in the background</li>
      *   <li>{@code maximumSize(configurer.maxSize())} - LRU eviction at max size</li>
+     *   <li>{@code staleIfError} - expired entries kept in a grace area of the same size</li>
      * </ul>
      *
      * <p><b>Default behavior with standard config:</b></p>
@@ -55,13 +91,435 @@ class CacheFactory {
      * // - Expires entries 10 minutes after write
      * // - Holds maximum 10 entries
      * // - Uses LRU eviction when full
-     * CacheFactory.create(new CacheConfigurer());
+     * CacheFactory.create(new CacheConfigurer(), loader);
      * }</pre>
      */
-    public static <K, V> Cache<K, V> create(CacheConfigurer configurer) {
+    public static ResponseCache create(CacheConfigurer configurer,
+                                       AsyncCacheLoader<CacheKey, WeatherResponse> loader) {
+        return create(configurer, loader, UpdateMode.ON_DEMAND);
+    }
+
+    /**
+     * Creates a cache instance for clients with the given update mode.
+     *
+     * @param configurer the cache configuration specifying TTL, size limits, refresh ratio
+     *                   and staleness windows
+     * @param loader the loader used to reload entries in the background
+     * @param updateMode update mode of the clients using the cache; {@link UpdateMode#REFRESH_AHEAD}
+     *                   reloads entries after {@code ttl * refreshAheadRatio}, {@link UpdateMode#POLLING}
+     *                   tracks access frequencies for popularity-aware polling
+     * @return configured ResponseCache instance ready for use
+     * @throws NullPointerException if configurer or loader is null
+     * @throws IllegalArgumentException if the refresh ratio is not between 0 and 1 exclusive,
+     *                                  a staleness window is negative, the disk TTL is not positive,
+     *                                  the not-found memory or remote tier is misconfigured,
+     *                                  or off-heap storage or observation-aware expiry is combined
+     *                                  with background refresh, or a custom implementation is
+     *                                  combined with features relying on evictions
+     * @throws IllegalStateException if the disk directory cannot be opened
+     *
+     * <p><b>Configuration applied:</b></p>
+     * <ul>
+     *   <li>{@code expireAfter(ttl + staleWhileRevalidate)} - entries expire after TTL
+     *       plus the staleness window</li>
+     *   <li>{@code refreshAfterWrite(ttl * refreshAheadRatio)} - with refresh-ahead; otherwise
+     *       {@code refreshAfterWrite(ttl)} when a staleness window is set</li>
+     *   <li>{@code maximumSize(configurer.maxSize())} - LRU eviction at max size, or
+     *       {@code maximumWeight(maxWeightBytes)} with {@link EntryWeigher} when a byte budget is set</li>
+     *   <li>{@code staleIfError} - expired entries kept in a grace area of the same size; a grace
+     *       value substituted for a failed load expires after {@link #STALE_RETRY_INTERVAL}</li>
+     *   <li>{@code diskDirectory} - entries evicted by size spilled to a disk tier with
+     *       the lifetime they had left, capped by {@code diskTtl}</li>
+     *   <li>{@code snapshotPath} - entries restored from the snapshot with their remaining TTL</li>
+     *   <li>{@code remoteAddress} - misses looked up on a Redis-compatible server before the API</li>
+     *   <li>{@code offHeap} - {@link OffHeapWeatherCache} instead of Caffeine; no background refresh</li>
+     *   <li>{@code observationAware} - {@link ObservationExpiry} instead of a fixed TTL</li>
+     *   <li>{@code implementation} - custom {@link WeatherCache} used as is; TTL, size and
+     *       eviction settings do not apply</li>
+     *   <li>{@code notFoundTtl}, {@code notFoundMaxSize} - cities answered with 404 are
+     *       remembered for this long, up to this many</li>
+     * </ul>
+     *
+     * <p>Only one reload runs per key at a time. A failed reload keeps the current
+     * value until it expires.</p>
+     */
+    public static ResponseCache create(CacheConfigurer configurer,
+                                       AsyncCacheLoader<CacheKey, WeatherResponse> loader,
+                                       UpdateMode updateMode) {
+        return create(configurer, Objects.requireNonNull(loader, "loader must not be null"), updateMode, false);
+    }
+
+    /**
+     * Creates the cache shared by clients of an SDK.
+     *
+     * <p>The shared cache has no loader: misses are loaded and entries within the
+     * staleness window are revalidated by the client reading them, through its own
+     * API, see {@link ResponseCache#revalidateIfDue}. Access frequencies are tracked,
+     * since any client may poll the cache.</p>
+     *
+     * @param configurer the cache configuration
+     * @return configured shared cache
+     * @throws IllegalArgumentException if the configuration is invalid, see
+     *                                  {@link #create(CacheConfigurer, AsyncCacheLoader, UpdateMode)}
+     * @throws IllegalStateException if the disk directory cannot be opened
+     */
+    public static ResponseCache createShared(CacheConfigurer configurer) {
+        return create(configurer, null, UpdateMode.POLLING, true);
+    }
+
+    /**
+     * Creates a cache revalidated either by the loader or by its readers.
+     *
+     * @param configurer the cache configuration
+     * @param loader the background loader, or null if readers revalidate entries
+     * @param updateMode update mode of the clients using the cache
+     * @param shared whether the cache is the SDK shared cache
+     * @return configured ResponseCache instance
+     */
+    private static ResponseCache create(CacheConfigurer configurer,
+                                        AsyncCacheLoader<CacheKey, WeatherResponse> loader,
+                                        UpdateMode updateMode,
+                                        boolean shared) {
+        boolean refreshAhead = updateMode == UpdateMode.REFRESH_AHEAD;
+        Duration ttl = configurer.ttl();
+        Duration staleWindow = configurer.staleWhileRevalidate();
+        if (staleWindow.isNegative()) {
+            throw new IllegalArgumentException("staleWhileRevalidate must not be negative, got " + staleWindow);
+        }
+
+        Duration lifetime = ttl.plus(staleWindow);
+        Expiry<CacheKey, WeatherResponse> expiry = createExpiry(configurer, lifetime, refreshAhead);
+        Duration refreshInterval = refreshAhead
+            ? refreshAheadInterval(configurer)
+            : staleWindow.isZero() ? null : ttl;
+        if (configurer.implementation() != null) {
+            checkCustomImplementation(configurer, refreshInterval);
+        }
+        Cache<CacheKey, WeatherResponse> fallback = createFallback(configurer);
+        if (fallback != null) {
+            expiry = new StaleCooldownExpiry(expiry, STALE_RETRY_INTERVAL.toNanos());
+        }
+        CarriedLifetimeExpiry carriedExpiry = null;
+        if (configurer.diskDirectory() != null || configurer.remoteAddress() != null) {
+            carriedExpiry = new CarriedLifetimeExpiry(expiry);
+            expiry = carriedExpiry;
+        }
+        Cache<String, NotFoundException> notFound = createNotFoundCache(configurer);
+        CityAliases aliases = createAliases(configurer);
+        FrequencySketch frequencies = updateMode == UpdateMode.POLLING
+            ? new FrequencySketch(configurer.maxSize())
+            : null;
+        DiskCacheTier disk = createDiskTier(configurer);
+        WeatherUpdates updates = new WeatherUpdates();
+
+        CacheStatsRecorder stats = new CacheStatsRecorder();
+        EvictionListener evictionListener = (key, value, cause, remainingMillis) -> {
+            if (value.isStale()) {
+                // The grace area still holds the original value and must not restart its age
+                return;
+            }
+            if (fallback != null && cause == RemovalCause.EXPIRED) {
+                fallback.put(key, value);
+            } else if (disk != null && cause == RemovalCause.SIZE) {
+                disk.put(key, value, remainingMillis);
+            }
+        };
+
+        WeatherCache store;
+        Revalidation revalidation = null;
+        if (configurer.implementation() != null) {
+            store = configurer.implementation();
+        } else if (configurer.offHeap()) {
+            if (refreshInterval != null) {
+                throw new IllegalArgumentException(
+                    "Off-heap cache does not support refresh-ahead or stale-while-revalidate");
+            }
+            long capacity = configurer.maxWeightBytes() > 0
+                ? configurer.maxWeightBytes() / OffHeapWeatherCache.ESTIMATED_ENTRY_BYTES
+                : configurer.maxSize();
+            store = new OffHeapWeatherCache(capacity, expiry, evictionListener, stats);
+        } else {
+            Caffeine<CacheKey, WeatherResponse> builder = bounded(Caffeine.newBuilder(), configurer)
+                    .expireAfter(expiry)
+                    .recordStats(() -> stats);
+            if (shared) {
+                CaffeineWeatherCache caffeine = CaffeineWeatherCache.build(builder, null, evictionListener, stats);
+                if (refreshInterval != null) {
+                    revalidation = new Revalidation(
+                        caffeine::remainingMillis, lifetime.toMillis(), refreshInterval.toMillis());
+                }
+                store = caffeine;
+            } else {
+                if (refreshInterval != null) {
+                    builder.refreshAfterWrite(refreshInterval);
+                }
+                // Background reloads bypass ResponseCache, so their responses are published here
+                AsyncCacheLoader<CacheKey, WeatherResponse> publishingLoader = (key, executor) ->
+                    loader.asyncLoad(key, executor).whenComplete((value, error) -> {
+                        if (value != null) {
+                            updates.publish(key, value);
+                        }
+                    });
+                store = CaffeineWeatherCache.build(builder, publishingLoader, evictionListener, stats);
+            }
+        }
+
+        Path snapshotPath = configurer.snapshotPath();
+        if (snapshotPath != null) {
+            CacheSnapshot.restore(snapshotPath, store, lifetime);
+        }
+
+        RemoteCacheTier remote = createRemoteTier(configurer, lifetime);
+        return new ResponseCache(
+            store, fallback, notFound, aliases, frequencies, updates, disk, remote, carriedExpiry, snapshotPath,
+            revalidation);
+    }
+
+    /**
+     * Verifies that a custom implementation is not combined with features it cannot serve.
+     *
+     * <p>Background refresh is driven by Caffeine, the grace area and the disk tier
+     * are fed by evictions of the built-in stores, which a custom implementation does
+     * not report, and remote hits keep their age through the expiry of the built-in
+     * stores.</p>
+     *
+     * @param configurer the cache configuration
+     * @param refreshInterval the background refresh interval, or null without refresh
+     * @throws IllegalArgumentException if any of these features is enabled
+     */
+    private static void checkCustomImplementation(CacheConfigurer configurer, Duration refreshInterval) {
+        if (refreshInterval != null || !configurer.staleIfError().isZero() || configurer.diskDirectory() != null
+            || configurer.remoteAddress() != null) {
+            throw new IllegalArgumentException("Custom cache implementation does not support refresh-ahead, "
+                + "stale-while-revalidate, stale-if-error, a disk tier or a remote tier");
+        }
+    }
+
+    /**
+     * Creates the expiration policy.
+     *
+     * @param configurer the cache configuration
+     * @param lifetime fixed lifetime of entries, TTL plus staleness window
+     * @param refreshAhead whether refresh-ahead reloads are enabled
+     * @return {@link ObservationExpiry} if observation-aware expiry is enabled,
+     *         otherwise a fixed lifetime
+     * @throws IllegalArgumentException if observation-aware expiry is combined with
+     *                                  background refresh or the minimum TTL is invalid
+     */
+    private static Expiry<CacheKey, WeatherResponse> createExpiry(CacheConfigurer configurer,
+                                                                  Duration lifetime,
+                                                                  boolean refreshAhead) {
+        if (!configurer.observationAware()) {
+            return new WriteExpiry(lifetime.toNanos());
+        }
+        if (refreshAhead || !configurer.staleWhileRevalidate().isZero()) {
+            throw new IllegalArgumentException(
+                "Observation-aware expiry does not support refresh-ahead or stale-while-revalidate");
+        }
+        Duration minTtl = configurer.minTtl();
+        if (minTtl.isNegative() || minTtl.isZero() || minTtl.compareTo(configurer.ttl()) > 0) {
+            throw new IllegalArgumentException("minTtl must be positive and not exceed ttl, got " + minTtl);
+        }
+        return new ObservationExpiry(minTtl, configurer.ttl());
+    }
+
+    /**
+     * Creates the stale-if-error grace area.
+     *
+     * @param configurer the cache configuration
+     * @return grace cache expiring entries after {@code staleIfError}, or null if disabled
+     * @throws IllegalArgumentException if the maximum stale age is negative
+     */
+    private static Cache<CacheKey, WeatherResponse> createFallback(CacheConfigurer configurer) {
+        Duration maxStaleAge = configurer.staleIfError();
+        if (maxStaleAge.isNegative()) {
+            throw new IllegalArgumentException("staleIfError must not be negative, got " + maxStaleAge);
+        }
+        if (maxStaleAge.isZero()) {
+            return null;
+        }
+        return bounded(Caffeine.newBuilder(), configurer)
+                .expireAfterWrite(maxStaleAge)
+                .build();
+    }
+
+    /**
+     * Creates the memory of cities not found by the API.
+     *
+     * @param configurer the cache configuration
+     * @return cache expiring city names after {@code notFoundTtl}, or null if disabled
+     * @throws IllegalArgumentException if the TTL is negative or the size is not positive
+     */
+    private static Cache<String, NotFoundException> createNotFoundCache(CacheConfigurer configurer) {
+        Duration ttl = configurer.notFoundTtl();
+        if (ttl.isNegative()) {
+            throw new IllegalArgumentException("notFoundTtl must not be negative, got " + ttl);
+        }
+        if (ttl.isZero()) {
+            return null;
+        }
+        if (configurer.notFoundMaxSize() <= 0) {
+            throw new IllegalArgumentException("notFoundMaxSize must be positive, got " + configurer.notFoundMaxSize());
+        }
         return Caffeine.newBuilder()
-                .expireAfterWrite(configurer.ttl())
-                .maximumSize(configurer.maxSize())
+                .maximumSize(configurer.notFoundMaxSize())
+                .expireAfterWrite(ttl)
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates the index of learned city aliases.
+     *
+     * @param configurer the cache configuration
+     * @return alias index bounded by {@code aliasMaxSize}, or null if disabled
+     * @throws IllegalArgumentException if the size is negative
+     */
+    private static CityAliases createAliases(CacheConfigurer configurer) {
+        int maxSize = configurer.aliasMaxSize();
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("aliasMaxSize must not be negative, got " + maxSize);
+        }
+        return maxSize == 0 ? null : new CityAliases(maxSize);
+    }
+
+    /**
+     * Applies the size bound of the configuration.
+     *
+     * @param builder the cache builder
+     * @param configurer the cache configuration
+     * @return builder bounded by {@code maxWeightBytes} with {@link EntryWeigher}
+     *         if set, otherwise by {@code maxSize}
+     * @throws IllegalArgumentException if the weight bound is negative
+     */
+    @SuppressWarnings("unchecked")
+    private static Caffeine<CacheKey, WeatherResponse> bounded(Caffeine<Object, Object> builder,
+                                                               CacheConfigurer configurer) {
+        long maxWeightBytes = configurer.maxWeightBytes();
+        if (maxWeightBytes < 0) {
+            throw new IllegalArgumentException("maxWeightBytes must not be negative, got " + maxWeightBytes);
+        }
+        if (maxWeightBytes == 0) {
+            // Unweighted builders accept any key and value type
+            Caffeine<?, ?> sized = builder.maximumSize(configurer.maxSize());
+            return (Caffeine<CacheKey, WeatherResponse>) sized;
+        }
+        return builder.maximumWeight(maxWeightBytes).weigher(EntryWeigher::weigh);
+    }
+
+    /**
+     * Opens the disk tier.
+     *
+     * @param configurer the cache configuration
+     * @return disk tier in {@code diskDirectory}, or null if disabled
+     * @throws IllegalArgumentException if the disk TTL is not positive
+     * @throws IllegalStateException if the directory cannot be opened or is used by another cache
+     */
+    private static DiskCacheTier createDiskTier(CacheConfigurer configurer) {
+        Path directory = configurer.diskDirectory();
+        if (directory == null) {
+            return null;
+        }
+        Duration ttl = configurer.diskTtl();
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("diskTtl must be positive, got " + ttl);
+        }
+        try {
+            return new DiskCacheTier(directory, ttl);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open disk cache in " + directory, e);
+        }
+    }
+
+    /**
+     * Creates the remote tier. The connection is opened on first use.
+     *
+     * @param configurer the cache configuration
+     * @param lifetime lifetime of a local entry, bounding the local lifetime of remote hits
+     * @return tier for {@code remoteAddress}, or null if disabled
+     * @throws IllegalArgumentException if the remote TTL or timeout is not positive
+     */
+    private static RemoteCacheTier createRemoteTier(CacheConfigurer configurer, Duration lifetime) {
+        if (configurer.remoteAddress() == null) {
+            return null;
+        }
+        Duration ttl = configurer.remoteTtl();
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("remoteTtl must be positive, got " + ttl);
+        }
+        Duration timeout = configurer.remoteTimeout();
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("remoteTimeout must be positive, got " + timeout);
+        }
+        return new RemoteCacheTier(configurer.remoteAddress(), configurer.remoteKeyPrefix(), ttl, lifetime, timeout);
+    }
+
+    /**
+     * Computes the entry age after which refresh-ahead reloads are triggered.
+     *
+     * @param configurer the cache configuration
+     * @return {@code ttl * refreshAheadRatio}
+     * @throws IllegalArgumentException if the ratio is not between 0 and 1 exclusive
+     */
+    private static Duration refreshAheadInterval(CacheConfigurer configurer) {
+        double ratio = configurer.refreshAheadRatio();
+        if (!(ratio > 0 && ratio < 1)) {
+            throw new IllegalArgumentException("refreshAheadRatio must be between 0 and 1, got " + ratio);
+        }
+        return Duration.ofNanos((long) (configurer.ttl().toNanos() * ratio));
+    }
+
+    /**
+     * Expires stale values substituted for failed loads after a short cooldown,
+     * and other values as the delegate policy decides.
+     */
+    @RequiredArgsConstructor
+    private static final class StaleCooldownExpiry implements Expiry<CacheKey, WeatherResponse> {
+
+        private final Expiry<CacheKey, WeatherResponse> delegate;
+        private final long cooldownNanos;
+
+        @Override
+        public long expireAfterCreate(CacheKey key, WeatherResponse value, long currentTime) {
+            long lifetime = delegate.expireAfterCreate(key, value, currentTime);
+            return value.isStale() ? Math.min(cooldownNanos, lifetime) : lifetime;
+        }
+
+        @Override
+        public long expireAfterUpdate(CacheKey key, WeatherResponse value, long currentTime, long currentDuration) {
+            long lifetime = delegate.expireAfterUpdate(key, value, currentTime, currentDuration);
+            return value.isStale() ? Math.min(cooldownNanos, lifetime) : lifetime;
+        }
+
+        @Override
+        public long expireAfterRead(CacheKey key, WeatherResponse value, long currentTime, long currentDuration) {
+            return delegate.expireAfterRead(key, value, currentTime, currentDuration);
+        }
+    }
+
+    /**
+     * Expires entries a fixed time after they were created or replaced.
+     *
+     * <p>Equivalent to {@code expireAfterWrite}, but makes the cache support
+     * per-entry lifetimes, which restored snapshot entries require.</p>
+     */
+    @RequiredArgsConstructor
+    private static final class WriteExpiry implements Expiry<CacheKey, WeatherResponse> {
+
+        private final long lifetimeNanos;
+
+        @Override
+        public long expireAfterCreate(CacheKey key, WeatherResponse value, long currentTime) {
+            return lifetimeNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(CacheKey key, WeatherResponse value, long currentTime, long currentDuration) {
+            return lifetimeNanos;
+        }
+
+        @Override
+        public long expireAfterRead(CacheKey key, WeatherResponse value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package ru.golubev.openweathersdk.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.WeatherCache;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+
+/**
+ * Writes cache contents to a snapshot file and restores them on startup.
+ *
+ * <p>Lets a restarted application begin with a warm cache instead of sending a
+ * request for every location at once. Each entry is stored with its expiration
+ * time, so restored entries expire when they would have without the restart.</p>
+ *
+ * <p><b>File layout:</b></p>
+ * <ol>
+ *   <li>{@code int} magic and {@code byte} format version</li>
+ *   <li>Blocks of up to {@value #BLOCK_ENTRIES} entries: {@code int} entry count,
+ *       {@code int} byte length, then per entry {@code long} expiration epoch millis,
+ *       key and response encoded with {@link WeatherResponseCodec}</li>
+ *   <li>{@code int} zero marking the end</li>
+ * </ol>
+ *
+ * <p>Blocks are read sequentially and decoded in parallel. Reading stays at
+ * most one block per processor ahead of the decoding, so large snapshots are
+ * restored without holding the whole file in memory at once.</p>
+ *
+ * @see ResponseCache
+ * @see WeatherCache
+ * @since 1.0
+ */
+@Slf4j
+@UtilityClass
+class CacheSnapshot {
+
+    private static final int MAGIC = 0x4F57_4353;
+    private static final int VERSION = 1;
+    private static final int BLOCK_ENTRIES = 4096;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Number of blocks read but not yet decoded, which bounds the memory of a restore.
+     */
+    private static final int MAX_PENDING_BLOCKS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Writes all completed entries of the cache to the snapshot file.
+     *
+     * <p>The file is replaced atomically, so a failed write leaves the previous
+     * snapshot intact. Failures are logged and not propagated.</p>
+     *
+     * @param path the snapshot file
+     * @param store the store to save
+     */
+    void write(Path path, WeatherCache store) {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        int written = 0;
+
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+
+                ByteArrayOutputStream block = new ByteArrayOutputStream(BUFFER_SIZE);
+                DataOutputStream blockOut = new DataOutputStream(block);
+                int[] count = new int[2];
+                long now = System.currentTimeMillis();
+
+                store.forEach((key, value, remainingMillis) -> {
+                    try {
+                        blockOut.writeLong(now + remainingMillis);
+                        WeatherResponseCodec.writeKey(blockOut, key);
+                        WeatherResponseCodec.writeResponse(blockOut, value);
+                        count[1]++;
+                        if (++count[0] == BLOCK_ENTRIES) {
+                            writeBlock(out, block, count[0]);
+                            count[0] = 0;
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                if (count[0] > 0) {
+                    writeBlock(out, block, count[0]);
+                }
+                written = count[1];
+                out.writeInt(0);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            log.debug("Wrote {} cache entries to snapshot {}", written, path);
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Failed to write cache snapshot {}", path, e);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // best effort
+            }
+        }
+    }
+
+    /**
+     * Loads unexpired entries from the snapshot file into the cache.
+     *
+     * <p>A missing file is not an error. A damaged file is logged and the
+     * entries read before the damage are kept.</p>
+     *
+     * @param path the snapshot file
+     * @param store the store to fill
+     * @param maxLifetime upper bound for the remaining lifetime of restored entries,
+     *                    so that a shorter configured TTL applies to old snapshots
+     * @return the number of restored entries
+     */
+    int restore(Path path, WeatherCache store, Duration maxLifetime) {
+        long maxLifetimeMillis = maxLifetime.toMillis();
+        Queue<CompletableFuture<Integer>> pending = new ArrayDeque<>();
+        int restored = 0;
+
+        try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                throw new IOException("Unsupported cache snapshot format");
+            }
+            int count;
+            while ((count = in.readInt()) != 0) {
+                if (pending.size() >= MAX_PENDING_BLOCKS) {
+                    restored += await(pending.remove(), path);
+                }
+                byte[] block = new byte[in.readInt()];
+                in.readFully(block);
+                int entries = count;
+                pending.add(CompletableFuture.supplyAsync(
+                    () -> restoreBlock(block, entries, store, maxLifetimeMillis)));
+            }
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            log.warn("Failed to read cache snapshot {}", path, e);
+        }
+
+        while (!pending.isEmpty()) {
+            restored += await(pending.remove(), path);
+        }
+
+        log.debug("Restored {} cache entries from snapshot {}", restored, path);
+        return restored;
+    }
+
+    /**
+     * Waits for a block to be restored.
+     *
+     * @return the number of restored entries, or 0 if the block is damaged
+     */
+    private int await(CompletableFuture<Integer> block, Path path) {
+        try {
+            return block.join();
+        } catch (RuntimeException e) {
+            log.warn("Failed to restore cache snapshot block from {}", path, e);
+            return 0;
+        }
+    }
+
+    /**
+     * Decodes one block and puts its unexpired entries into the cache.
+     *
+     * @return the number of restored entries
+     */
+    private int restoreBlock(byte[] block,
+                             int entries,
+                             WeatherCache store,
+                             long maxLifetimeMillis) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(block));
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        try {
+            for (int i = 0; i < entries; i++) {
+                long expiresAt = in.readLong();
+                CacheKey key = WeatherResponseCodec.readKey(in);
+                WeatherResponse value = WeatherResponseCodec.readResponse(in);
+
+                long remaining = Math.min(expiresAt - now, maxLifetimeMillis);
+                if (remaining > 0) {
+                    store.putIfAbsent(key, value, remaining);
+                    restored++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return restored;
+    }
+
+    private void writeBlock(DataOutputStream out, ByteArrayOutputStream block, int count) throws IOException {
+        out.writeInt(count);
+        out.writeInt(block.size());
+        block.writeTo(out);
+        block.reset();
+    }
+}
@@ -0,0 +1,95 @@
+package ru.golubev.openweathersdk.internal;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import java.util.concurrent.atomic.LongAdder;
+import ru.golubev.openweathersdk.CacheFootprint;
+import ru.golubev.openweathersdk.WeatherCacheStats;
+
+/**
+ * Statistics counter of one {@link ResponseCache}.
+ *
+ * <p>Passed to Caffeine through {@code recordStats}, so hits, misses, loads
+ * and evictions of the Caffeine store are counted by the cache itself. The
+ * off-heap store reports the same events explicitly. Unlike Caffeine's own
+ * counter, evictions are kept per cause.</p>
+ *
+ * <p><b>Thread Safety:</b> All counters are {@link LongAdder}s.</p>
+ *
+ * @see WeatherCacheStats
+ * @since 1.0
+ */
+final class CacheStatsRecorder implements StatsCounter {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadSuccesses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder evictionWeight = new LongAdder();
+
+    @Override
+    public void recordHits(int count) {
+        hits.add(count);
+    }
+
+    @Override
+    public void recordMisses(int count) {
+        misses.add(count);
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTime) {
+        loadSuccesses.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    @Override
+    public void recordLoadFailure(long loadTime) {
+        loadFailures.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    @Override
+    public void recordEviction(int weight, RemovalCause cause) {
+        if (cause == RemovalCause.SIZE) {
+            sizeEvictions.increment();
+        } else if (cause == RemovalCause.EXPIRED) {
+            expirations.increment();
+        }
+        evictionWeight.add(weight);
+    }
+
+    @Override
+    public CacheStats snapshot() {
+        return CacheStats.of(
+            hits.sum(),
+            misses.sum(),
+            loadSuccesses.sum(),
+            loadFailures.sum(),
+            totalLoadTime.sum(),
+            sizeEvictions.sum() + expirations.sum(),
+            evictionWeight.sum());
+    }
+
+    /**
+     * Returns the current counters as public statistics.
+     *
+     * @param footprint current size of the cache
+     * @return statistics snapshot
+     */
+    WeatherCacheStats snapshot(CacheFootprint footprint) {
+        return new WeatherCacheStats(
+            hits.sum(),
+            misses.sum(),
+            loadSuccesses.sum(),
+            loadFailures.sum(),
+            totalLoadTime.sum(),
+            sizeEvictions.sum(),
+            expirations.sum(),
+            footprint);
+    }
+}
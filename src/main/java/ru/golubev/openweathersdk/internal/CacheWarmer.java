@@ -0,0 +1,209 @@
+package ru.golubev.openweathersdk.internal;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import lombok.extern.slf4j.Slf4j;
+import ru.golubev.openweathersdk.WarmUpConfigurer;
+import ru.golubev.openweathersdk.WarmUpProgress;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+
+/**
+ * Loads a list of cities into a client's cache with bounded parallelism.
+ *
+ * <p>Runs up to {@link WarmUpConfigurer#concurrency} workers, each loading one
+ * city at a time through the client, so loads share in-flight requests with
+ * regular lookups and fill every cache tier. API calls are spaced to honor
+ * {@link WarmUpConfigurer#maxRequestsPerSecond}; cities already cached or
+ * being loaded need no call and do not wait.</p>
+ *
+ * <p><b>Readiness:</b></p>
+ * <ul>
+ *   <li>The future of {@link #start()} completes with the progress once the
+ *       target number of cities is loaded; the rest keep loading</li>
+ *   <li>It completes exceptionally with {@link IllegalStateException} if every
+ *       city finished and the target was not reached</li>
+ *   <li>Cancelling it stops starting new loads</li>
+ * </ul>
+ *
+ * @see WeatherClientImpl#warmUp
+ * @since 1.0
+ */
+@Slf4j
+final class CacheWarmer {
+
+    private final List<String> cities;
+    private final Function<String, CompletableFuture<WeatherResponse>> loader;
+    private final Predicate<String> cached;
+    private final int concurrency;
+    private final long intervalNanos;
+    private final int target;
+    private final Consumer<WarmUpProgress> progressListener;
+    private final boolean loggingEnabled;
+
+    private final CompletableFuture<WarmUpProgress> ready = new CompletableFuture<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger loaded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * Start time of the next rate-limited API call, in {@link System#nanoTime()} units.
+     */
+    private final AtomicLong nextCallAt = new AtomicLong(System.nanoTime());
+
+    /**
+     * Creates a warmer; nothing is loaded before {@link #start()}.
+     *
+     * @param cities the cities to load
+     * @param loader loads a city through the client
+     * @param cached checks whether a city is already cached or being loaded
+     * @param configurer validated warm-up configuration
+     * @param loggingEnabled enables debug logging
+     */
+    CacheWarmer(List<String> cities,
+                Function<String, CompletableFuture<WeatherResponse>> loader,
+                Predicate<String> cached,
+                WarmUpConfigurer configurer,
+                boolean loggingEnabled) {
+        this.cities = cities;
+        this.loader = loader;
+        this.cached = cached;
+        this.concurrency = Math.min(configurer.concurrency(), cities.size());
+        this.intervalNanos = configurer.maxRequestsPerSecond() > 0
+            ? (long) (TimeUnit.SECONDS.toNanos(1) / configurer.maxRequestsPerSecond())
+            : 0;
+        this.target = (int) Math.ceil(configurer.targetFill() * cities.size());
+        this.progressListener = configurer.progressListener();
+        this.loggingEnabled = loggingEnabled;
+    }
+
+    /**
+     * Starts the workers.
+     *
+     * @return future completed with the progress when the target fill is reached
+     */
+    CompletableFuture<WarmUpProgress> start() {
+        if (loggingEnabled) {
+            log.debug("Cache warm-up started; cities={}, target={}, concurrency={}",
+                cities.size(), target, concurrency);
+        }
+        if (target == 0) {
+            ready.complete(progress());
+        }
+        for (int i = 0; i < concurrency; i++) {
+            runWorker();
+        }
+        return ready;
+    }
+
+    /**
+     * Loads cities until the list is exhausted or a load has to be waited for,
+     * in which case its completion continues the worker.
+     */
+    private void runWorker() {
+        while (!ready.isCancelled()) {
+            int index = next.getAndIncrement();
+            if (index >= cities.size()) {
+                return;
+            }
+            String city = cities.get(index);
+            // Cached cities are served without an API call and do not use up the rate
+            long delay = cached.test(city) ? 0 : reserveCall();
+            if (delay > 0) {
+                CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+                    if (load(city)) {
+                        runWorker();
+                    }
+                });
+                return;
+            }
+            if (!load(city)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Starts the load of a city. If it does not complete immediately, its
+     * completion records the result and continues the worker.
+     *
+     * <p>The caller must rely on the returned flag rather than on the state of the
+     * load, which may complete right after this method attached its continuation.</p>
+     *
+     * @return true if the result was recorded here and the caller continues the
+     *         worker, false if the completion of the load continues it
+     */
+    private boolean load(String city) {
+        CompletableFuture<WeatherResponse> response;
+        try {
+            response = loader.apply(city);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+
+        if (response.isDone()) {
+            record(!response.isCompletedExceptionally());
+            return true;
+        }
+        response.whenComplete((value, error) -> {
+            if (error != null && loggingEnabled) {
+                log.debug("Cache warm-up failed to load city: {}", city, error);
+            }
+            record(error == null);
+            runWorker();
+        });
+        return false;
+    }
+
+    /**
+     * Reserves the next slot of the rate limit.
+     *
+     * @return nanoseconds to wait before the call may start
+     */
+    private long reserveCall() {
+        if (intervalNanos == 0) {
+            return 0;
+        }
+        while (true) {
+            long now = System.nanoTime();
+            long slot = nextCallAt.get();
+            long start = slot - now > 0 ? slot : now;
+            if (nextCallAt.compareAndSet(slot, start + intervalNanos)) {
+                return start - now;
+            }
+        }
+    }
+
+    private void record(boolean success) {
+        int loadedNow = success ? loaded.incrementAndGet() : loaded.get();
+        if (!success) {
+            failed.incrementAndGet();
+        }
+        WarmUpProgress progress = progress();
+
+        if (progressListener != null) {
+            try {
+                progressListener.accept(progress);
+            } catch (RuntimeException e) {
+                log.warn("Cache warm-up progress listener failed", e);
+            }
+        }
+
+        if (loadedNow >= target && ready.complete(progress) && loggingEnabled) {
+            log.debug("Cache warm-up reached its target; progress={}", progress);
+        }
+        if (progress.isFinished() && !ready.isDone()) {
+            ready.completeExceptionally(new IllegalStateException("Cache warm-up loaded " + progress.getLoaded()
+                + " of " + progress.getTotal() + " cities, below the target of " + target));
+        }
+    }
+
+    private WarmUpProgress progress() {
+        return new WarmUpProgress(cities.size(), loaded.get(), failed.get());
+    }
+}
@@ -0,0 +1,176 @@
+package ru.golubev.openweathersdk.internal;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy.Eviction;
+import com.github.benmanes.caffeine.cache.Policy.VarExpiration;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import ru.golubev.openweathersdk.CacheFootprint;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.WeatherCache;
+import ru.golubev.openweathersdk.WeatherCacheStats;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+
+/**
+ * Weather cache backed by a Caffeine {@link AsyncCache}.
+ *
+ * <p>The default implementation. Entries are regular heap objects, and the cache may be
+ * configured with {@code refreshAfterWrite} for refresh-ahead and
+ * stale-while-revalidate. The cache must use variable expiration so that
+ * restored entries keep their remaining lifetime.</p>
+ *
+ * @see CacheFactory
+ * @since 1.0
+ */
+final class CaffeineWeatherCache implements WeatherCache {
+
+    private final AsyncCache<CacheKey, WeatherResponse> cache;
+    private final VarExpiration<CacheKey, WeatherResponse> expiration;
+    private final CacheStatsRecorder stats;
+
+    /**
+     * Creates a cache over the given Caffeine cache.
+     *
+     * @param cache the cache; must use variable expiration
+     * @param stats the counters the cache records to
+     * @throws IllegalStateException if the cache does not use variable expiration
+     */
+    CaffeineWeatherCache(AsyncCache<CacheKey, WeatherResponse> cache, CacheStatsRecorder stats) {
+        this.cache = cache;
+        this.stats = stats;
+        this.expiration = cache.synchronous().policy().expireVariably()
+            .orElseThrow(() -> new IllegalStateException("Response cache requires variable expiration"));
+    }
+
+    /**
+     * Builds a cache that reports evicted entries with their remaining lifetime.
+     *
+     * <p>Caffeine runs eviction listeners within the atomic removal of the entry,
+     * while the expiration policy still sees it, so the remaining lifetime is
+     * read from the policy.</p>
+     *
+     * @param builder the configured builder; must use variable expiration
+     * @param loader loads missing and refreshed entries, or null if every lookup
+     *               passes its own loader and the builder has no refresh
+     * @param listener receives expired and evicted entries
+     * @param stats the counters the cache records to
+     * @return the cache
+     * @throws IllegalStateException if the builder does not use variable expiration
+     */
+    static CaffeineWeatherCache build(Caffeine<CacheKey, WeatherResponse> builder,
+                                      AsyncCacheLoader<CacheKey, WeatherResponse> loader,
+                                      EvictionListener listener,
+                                      CacheStatsRecorder stats) {
+        // Entries are only evicted after the cache is built and assigned
+        CaffeineWeatherCache[] built = new CaffeineWeatherCache[1];
+        builder.evictionListener((CacheKey key, WeatherResponse value, RemovalCause cause) -> {
+            if (key != null && value != null) {
+                listener.onEviction(key, value, cause, built[0].remainingMillis(key));
+            }
+        });
+        built[0] = new CaffeineWeatherCache(loader != null ? builder.buildAsync(loader) : builder.buildAsync(), stats);
+        return built[0];
+    }
+
+    @Override
+    public CompletableFuture<WeatherResponse> getIfPresent(CacheKey key) {
+        // The map view does not record statistics, so an absent key is not a miss
+        CompletableFuture<WeatherResponse> response = cache.asMap().get(key);
+        if (response != null) {
+            stats.recordHits(1);
+        }
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<WeatherResponse> get(CacheKey key,
+                                                  BiFunction<CacheKey, Executor, CompletableFuture<WeatherResponse>> loader) {
+        return cache.get(key, loader);
+    }
+
+    @Override
+    public Set<CacheKey> keys() {
+        return cache.asMap().keySet();
+    }
+
+    @Override
+    public void put(CacheKey key, WeatherResponse value) {
+        cache.put(key, CompletableFuture.completedFuture(value));
+    }
+
+    @Override
+    public void putIfAbsent(CacheKey key, WeatherResponse value, long lifetimeMillis) {
+        expiration.putIfAbsent(key, value, lifetimeMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void forEach(EntryConsumer consumer) {
+        cache.synchronous().asMap().forEach((key, value) -> {
+            OptionalLong remaining = expiration.getExpiresAfter(key, TimeUnit.MILLISECONDS);
+            if (remaining.isPresent() && remaining.getAsLong() > 0) {
+                consumer.accept(key, value, remaining.getAsLong());
+            }
+        });
+    }
+
+    @Override
+    public void invalidate(CacheKey key) {
+        cache.synchronous().invalidate(key);
+    }
+
+    @Override
+    public WeatherCacheStats stats() {
+        return stats.snapshot(footprint());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Uses the weighted size tracked by Caffeine when the cache is bounded by
+     * weight, otherwise weighs every entry.</p>
+     */
+    @Override
+    public CacheFootprint footprint() {
+        Optional<Eviction<CacheKey, WeatherResponse>> eviction = cache.synchronous().policy().eviction();
+        if (eviction.isPresent() && eviction.get().isWeighted()) {
+            return new CacheFootprint(
+                cache.synchronous().estimatedSize(),
+                eviction.get().weightedSize().orElse(0L));
+        }
+
+        long[] totals = new long[2];
+        cache.synchronous().asMap().forEach((key, value) -> {
+            totals[0]++;
+            totals[1] += EntryWeigher.weigh(key, value);
+        });
+        return new CacheFootprint(totals[0], totals[1]);
+    }
+
+    /**
+     * Returns how long the entry for the key has left to live.
+     *
+     * @param key the cache key
+     * @return remaining lifetime in milliseconds, or 0 if absent or expired
+     */
+    long remainingMillis(CacheKey key) {
+        return Math.max(0, expiration.getExpiresAfter(key, TimeUnit.MILLISECONDS).orElse(0));
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    @Override
+    public void cleanUp() {
+        cache.synchronous().cleanUp();
+    }
+}
@@ -0,0 +1,83 @@
+package ru.golubev.openweathersdk.internal;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import java.util.concurrent.TimeUnit;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+
+/**
+ * Expiration policy that lets responses read back from a lower tier keep the
+ * lifetime they have left.
+ *
+ * <p>Lower tier hits are returned by the loader of the in-memory store, so
+ * concurrent misses of a key share one lookup. The store would then give them a
+ * full lifetime; {@link #carry} remembers the expiration time of such a response
+ * and caps its lifetime when the store inserts it. Responses are tracked by
+ * identity and weakly, so a remembered time is dropped with its response.</p>
+ *
+ * @see ResponseCache
+ * @see DiskCacheTier
+ * @see RemoteCacheTier
+ * @since 1.0
+ */
+final class CarriedLifetimeExpiry implements Expiry<CacheKey, WeatherResponse> {
+
+    private final Expiry<CacheKey, WeatherResponse> delegate;
+
+    /**
+     * Expiration times in epoch milliseconds of responses read from lower tiers.
+     */
+    private final Cache<WeatherResponse, Long> expirations = Caffeine.newBuilder()
+        .weakKeys()
+        .build();
+
+    /**
+     * Creates the policy.
+     *
+     * @param delegate decides the lifetime of all other responses, and caps carried ones
+     */
+    CarriedLifetimeExpiry(Expiry<CacheKey, WeatherResponse> delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Remembers when a response read from a lower tier expires.
+     *
+     * @param value the response about to be returned by a store loader
+     * @param expiresAt expiration time in epoch milliseconds
+     * @return the response, or null if it has already expired
+     */
+    WeatherResponse carry(WeatherResponse value, long expiresAt) {
+        if (expiresAt <= System.currentTimeMillis()) {
+            return null;
+        }
+        expirations.put(value, expiresAt);
+        return value;
+    }
+
+    @Override
+    public long expireAfterCreate(CacheKey key, WeatherResponse value, long currentTime) {
+        return cap(value, delegate.expireAfterCreate(key, value, currentTime));
+    }
+
+    @Override
+    public long expireAfterUpdate(CacheKey key, WeatherResponse value, long currentTime, long currentDuration) {
+        return cap(value, delegate.expireAfterUpdate(key, value, currentTime, currentDuration));
+    }
+
+    @Override
+    public long expireAfterRead(CacheKey key, WeatherResponse value, long currentTime, long currentDuration) {
+        return delegate.expireAfterRead(key, value, currentTime, currentDuration);
+    }
+
+    private long cap(WeatherResponse value, long lifetimeNanos) {
+        Long expiresAt = expirations.getIfPresent(value);
+        if (expiresAt == null) {
+            return lifetimeNanos;
+        }
+        long remaining = TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiresAt - System.currentTimeMillis()));
+        return Math.min(remaining, lifetimeNanos);
+    }
+}
@@ -0,0 +1,90 @@
+package ru.golubev.openweathersdk.internal;
+
+import java.util.Objects;
+import lombok.Value;
+import ru.golubev.openweathersdk.SubscriptionConfigurer;
+import ru.golubev.openweathersdk.model.Temperature;
+import ru.golubev.openweathersdk.model.Weather;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+import ru.golubev.openweathersdk.model.Wind;
+
+/**
+ * Immutable copy of a {@link SubscriptionConfigurer} deciding which responses are published.
+ *
+ * <p>Subscriptions of a city with equal thresholds share one stream, so this
+ * class is a value used as a map key.</p>
+ *
+ * @see WeatherUpdates
+ * @since 1.0
+ */
+@Value
+class ChangeThreshold {
+
+    double temperature;
+    double feelsLike;
+    double windSpeed;
+    int visibility;
+    boolean conditions;
+    int bufferCapacity;
+
+    /**
+     * Copies a validated configurer.
+     *
+     * @param configurer the subscription configuration
+     * @return the thresholds of the configuration
+     */
+    static ChangeThreshold of(SubscriptionConfigurer configurer) {
+        return new ChangeThreshold(
+            configurer.temperatureDelta(),
+            configurer.feelsLikeDelta(),
+            configurer.windSpeedDelta(),
+            configurer.visibilityDelta(),
+            configurer.conditionChanges(),
+            configurer.bufferCapacity());
+    }
+
+    /**
+     * Checks whether a response differs materially from the previously published one.
+     *
+     * <p>A field that is missing in only one of the responses counts as changed.</p>
+     *
+     * @param previous the last published response
+     * @param next the refreshed response
+     * @return true if any measurement changed by at least its delta, or the
+     *         condition changed and condition changes are published
+     */
+    boolean isMaterialChange(WeatherResponse previous, WeatherResponse next) {
+        Temperature before = previous.getTemperature();
+        Temperature after = next.getTemperature();
+        return changed(before == null ? null : before.getTemp(), after == null ? null : after.getTemp(), temperature)
+            || changed(before == null ? null : before.getFeels_like(), after == null ? null : after.getFeels_like(),
+                feelsLike)
+            || changed(speed(previous.getWind()), speed(next.getWind()), windSpeed)
+            || changed(toDouble(previous.getVisibility()), toDouble(next.getVisibility()), visibility)
+            || conditions && conditionChanged(previous.getWeather(), next.getWeather());
+    }
+
+    private static boolean changed(Double before, Double after, double delta) {
+        if (before == null || after == null) {
+            return !Objects.equals(before, after);
+        }
+        double difference = Math.abs(after - before);
+        return difference > 0 && difference >= delta;
+    }
+
+    private static boolean conditionChanged(Weather before, Weather after) {
+        if (before == null || after == null) {
+            return before != after;
+        }
+        return !Objects.equals(before.getMain(), after.getMain())
+            || !Objects.equals(before.getDescription(), after.getDescription());
+    }
+
+    private static Double speed(Wind wind) {
+        return wind == null ? null : wind.getSpeed();
+    }
+
+    private static Double toDouble(Integer value) {
+        return value == null ? null : value.doubleValue();
+    }
+}
@@ -0,0 +1,158 @@
+package ru.golubev.openweathersdk.internal;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.util.Locale;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+
+/**
+ * Index of city spellings that resolve to the same cache entry.
+ *
+ * <p>OpenWeather matches city names case-insensitively and ignores surrounding
+ * whitespace, so {@code "london"}, {@code "London "} and {@code "LONDON"} are the
+ * same request. {@link #normalize} folds such variants into one key before the
+ * cache is consulted. Spellings that differ beyond that, such as a local name
+ * or a transliteration, are learned from responses: a response whose canonical
+ * name differs from the query records the query as an alias of the canonical
+ * name, and later lookups of the alias are served by the canonical entry.</p>
+ *
+ * <p><b>Canonical names:</b></p>
+ * <ul>
+ *   <li>The normalized {@code name} of the response, followed by the state and
+ *       country qualifiers of the query, so {@code "Paris,US"} does not merge
+ *       with {@code "Paris"}</li>
+ *   <li>Coordinate cells are never aliased</li>
+ *   <li>Aliases are kept per language and units, like cache entries</li>
+ * </ul>
+ *
+ * @see ResponseCache
+ * @see WeatherClientImpl
+ * @since 1.0
+ */
+final class CityAliases {
+
+    /**
+     * How long a learned alias is kept, so renamed or re-resolved cities are relearned.
+     */
+    private static final Duration TTL = Duration.ofDays(1);
+
+    /**
+     * Canonical keys by alias key.
+     */
+    private final Cache<CacheKey, CacheKey> aliases;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param maxSize maximum number of aliases
+     */
+    CityAliases(long maxSize) {
+        this.aliases = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(TTL)
+            .build();
+    }
+
+    /**
+     * Normalizes a city query the way OpenWeather matches it.
+     *
+     * <p>Trims the query, collapses whitespace runs to a single space, removes
+     * whitespace around commas and converts it to lower case. Queries that are
+     * already normalized are returned without copying.</p>
+     *
+     * @param city the city query
+     * @return the normalized query
+     */
+    static String normalize(String city) {
+        if (isNormalized(city)) {
+            return city;
+        }
+
+        StringBuilder normalized = new StringBuilder(city.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < city.length(); i++) {
+            char c = city.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+                continue;
+            }
+            int last = normalized.length() - 1;
+            if (c == ',') {
+                pendingSpace = false;
+            } else if (pendingSpace && last >= 0 && normalized.charAt(last) != ',') {
+                normalized.append(' ');
+            }
+            pendingSpace = false;
+            normalized.append(c);
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the canonical key of an alias.
+     *
+     * @param key the normalized cache key
+     * @return the canonical key, or the given key if it is not a known alias
+     */
+    CacheKey resolve(CacheKey key) {
+        CacheKey canonical = aliases.getIfPresent(key);
+        return canonical != null ? canonical : key;
+    }
+
+    /**
+     * Records the query as an alias if the response names a different city.
+     *
+     * @param key the loaded cache key
+     * @param response the response loaded for the key
+     * @return the canonical key of the response, or the given key if it is canonical
+     */
+    CacheKey learn(CacheKey key, WeatherResponse response) {
+        String name = response.getName();
+        if (name == null || name.isEmpty() || GeoHash.isCellKey(key.city())) {
+            return key;
+        }
+
+        String query = key.city();
+        int qualifiers = query.indexOf(',');
+        String canonicalCity = qualifiers < 0
+            ? normalize(name)
+            : normalize(name) + query.substring(qualifiers);
+        if (canonicalCity.equals(query)) {
+            return key;
+        }
+
+        CacheKey canonical = CacheKey.of(canonicalCity, key.language(), key.units());
+        aliases.put(key, canonical);
+        return canonical;
+    }
+
+    /**
+     * Discards all aliases.
+     */
+    void invalidateAll() {
+        aliases.invalidateAll();
+    }
+
+    private static boolean isNormalized(String city) {
+        int length = city.length();
+        if (length == 0) {
+            return true;
+        }
+        if (Character.isWhitespace(city.charAt(0)) || Character.isWhitespace(city.charAt(length - 1))) {
+            return false;
+        }
+        char previous = 0;
+        for (int i = 0; i < length; i++) {
+            char c = city.charAt(i);
+            if (Character.toLowerCase(c) != c
+                || (Character.isWhitespace(c) && (c != ' ' || previous == ' ' || previous == ','))
+                || (c == ',' && previous == ' ')) {
+                return false;
+            }
+            previous = c;
+        }
+        return true;
+    }
+}
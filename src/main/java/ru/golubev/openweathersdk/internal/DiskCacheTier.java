@@ -0,0 +1,551 @@
+package ru.golubev.openweathersdk.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+
+/**
+ * Second cache tier storing weather responses in an append-only file on local disk.
+ *
+ * <p>Holds entries evicted from the in-memory cache so that key spaces much larger
+ * than the heap can be served without calling the API. Only a small index of
+ * file offsets is kept in memory; responses are stored with
+ * {@link WeatherResponseCodec}.</p>
+ *
+ * <p><b>Storage model:</b></p>
+ * <ul>
+ *   <li>Records are appended to a single segment file: {@code length, expiresAt, key, value}</li>
+ *   <li>A record expires when its entry would have expired in memory, or after the tier's TTL</li>
+ *   <li>Replaced, taken and expired records become garbage in the file</li>
+ *   <li>A background task compacts the segment once garbage exceeds half of it</li>
+ *   <li>Compaction copies live records to a new segment while reads and writes continue</li>
+ *   <li>The index is rebuilt from the segment on startup, so entries survive restarts</li>
+ * </ul>
+ *
+ * <p><b>Thread Safety:</b> Reads run concurrently; appends and the final
+ * segment swap of a compaction are exclusive. Asynchronous reads run on the
+ * tier's own threads, keeping blocking file I/O off shared pools.</p>
+ *
+ * @see ResponseCache
+ * @see WeatherResponseCodec
+ * @since 1.0
+ */
+@Slf4j
+final class DiskCacheTier implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String LOCK_FILE = "tier.lock";
+
+    /**
+     * Record header: total record length and expiration time.
+     */
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES;
+
+    /**
+     * Interval between compaction checks.
+     */
+    private static final Duration COMPACTION_INTERVAL = Duration.ofMinutes(1);
+
+    /**
+     * Segment size below which compaction is not worth running.
+     */
+    private static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+
+    /**
+     * Threads reading records for {@link #takeAsync}.
+     */
+    private static final int READER_THREADS = 4;
+
+    /**
+     * File position and expiration of a live record.
+     */
+    @RequiredArgsConstructor
+    private static final class Slot {
+        private final long offset;
+        private final int length;
+        private final long expiresAt;
+    }
+
+    /**
+     * Response read back from the tier.
+     */
+    @Value
+    static class Entry {
+
+        WeatherResponse value;
+
+        /**
+         * Expiration time in epoch milliseconds.
+         */
+        long expiresAt;
+    }
+
+    private final Path directory;
+    private final long ttlMillis;
+
+    /**
+     * Location of every live record by key.
+     */
+    private final ConcurrentMap<CacheKey, Slot> index = new ConcurrentHashMap<>();
+
+    /**
+     * Read lock for lookups and compaction copying; write lock for appends and segment swaps.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Bytes of the segment no longer referenced by the index.
+     */
+    private final AtomicLong garbageBytes = new AtomicLong();
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "weather-disk-tier-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ExecutorService readers = Executors.newFixedThreadPool(READER_THREADS, r -> {
+        Thread thread = new Thread(r, "weather-disk-tier-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final FileChannel lockChannel;
+    private final FileLock directoryLock;
+
+    private FileChannel segment;
+    private long generation;
+    private long size;
+
+    /**
+     * Opens the tier in the given directory, recovering entries left by a previous run.
+     *
+     * @param directory the directory holding the segment file; created if missing
+     * @param ttl maximum time-to-live of spilled entries
+     * @throws IOException if the directory cannot be opened or is used by another cache
+     */
+    DiskCacheTier(Path directory, Duration ttl) throws IOException {
+        this.directory = directory;
+        this.ttlMillis = ttl.toMillis();
+
+        Files.createDirectories(directory);
+        lockChannel = FileChannel.open(directory.resolve(LOCK_FILE),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            directoryLock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lockChannel.close();
+            throw new IOException("Disk cache directory is already in use: " + directory, e);
+        }
+        if (directoryLock == null) {
+            lockChannel.close();
+            throw new IOException("Disk cache directory is already in use: " + directory);
+        }
+
+        openLatestSegment();
+        recover();
+
+        long interval = COMPACTION_INTERVAL.toMillis();
+        compactor.scheduleWithFixedDelay(this::compactIfNeeded, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stores a response, replacing any previous record for the key.
+     *
+     * @param key the cache key
+     * @param value the response to store
+     * @param lifetimeMillis lifetime the response has left in memory; the record
+     *                       expires after it or the tier's TTL, whichever is shorter
+     */
+    void put(CacheKey key, WeatherResponse value, long lifetimeMillis) {
+        if (lifetimeMillis <= 0) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + Math.min(lifetimeMillis, ttlMillis);
+        byte[] record;
+        try {
+            record = encode(key, value, expiresAt);
+        } catch (IOException e) {
+            log.warn("Failed to encode disk cache record for {}", key, e);
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (closed.get()) {
+                return;
+            }
+            long offset = size;
+            writeFully(segment, ByteBuffer.wrap(record), offset);
+            size += record.length;
+            release(index.put(key, new Slot(offset, record.length, expiresAt)));
+        } catch (IOException e) {
+            log.warn("Failed to write disk cache record for {}", key, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes and returns the response for the key.
+     *
+     * <p>Entries are taken rather than copied because a hit is promoted back to
+     * the in-memory tier and will be spilled again when evicted.</p>
+     *
+     * @param key the cache key
+     * @return the stored response with its expiration time, or null if absent or expired
+     */
+    Entry take(CacheKey key) {
+        lock.readLock().lock();
+        try {
+            if (closed.get()) {
+                return null;
+            }
+            Slot slot = index.remove(key);
+            if (slot == null) {
+                return null;
+            }
+            release(slot);
+            if (slot.expiresAt <= System.currentTimeMillis()) {
+                return null;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(slot.length);
+            readFully(segment, buffer, slot.offset);
+
+            DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(buffer.array(), HEADER_BYTES, slot.length - HEADER_BYTES));
+            WeatherResponseCodec.readKey(in);
+            return new Entry(WeatherResponseCodec.readResponse(in), slot.expiresAt);
+        } catch (IOException e) {
+            log.warn("Failed to read disk cache record for {}", key, e);
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes and returns the response for the key on the tier's reader threads.
+     *
+     * @param key the cache key
+     * @return future of the stored response with its expiration time, completed
+     *         with null if absent, expired or the tier is closed
+     * @see #take
+     */
+    CompletableFuture<Entry> takeAsync(CacheKey key) {
+        try {
+            return CompletableFuture.supplyAsync(() -> take(key), readers);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Stops compaction and closes the segment. Stored entries remain on disk
+     * and are recovered by the next tier opened on the same directory.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        compactor.shutdownNow();
+        readers.shutdown();
+
+        lock.writeLock().lock();
+        try {
+            segment.close();
+            directoryLock.release();
+            lockChannel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close disk cache tier in {}", directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops expired entries from the index and compacts the segment when
+     * garbage exceeds half of it.
+     */
+    private void compactIfNeeded() {
+        try {
+            long now = System.currentTimeMillis();
+            index.forEach((key, slot) -> {
+                if (slot.expiresAt <= now && index.remove(key, slot)) {
+                    release(slot);
+                }
+            });
+
+            long currentSize;
+            lock.readLock().lock();
+            try {
+                currentSize = size;
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            if (currentSize >= MIN_COMPACTION_BYTES && garbageBytes.get() * 2 > currentSize) {
+                compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Disk cache compaction failed in {}", directory, e);
+        }
+    }
+
+    /**
+     * Rewrites live records into a new segment.
+     *
+     * <p>Records below the current end of the segment are copied without blocking
+     * other operations, since an append-only file never changes below its end.
+     * The exclusive lock is then held only to copy records appended meanwhile,
+     * remap the index and swap the files.</p>
+     *
+     * @throws IOException if the new segment cannot be written
+     */
+    void compact() throws IOException {
+        FileChannel source;
+        long end;
+        lock.readLock().lock();
+        try {
+            if (closed.get()) {
+                return;
+            }
+            source = segment;
+            end = size;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Path targetPath = segmentPath(generation + 1);
+        FileChannel target = FileChannel.open(targetPath,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            Map<CacheKey, Slot[]> moved = new HashMap<>();
+            long targetSize = 0;
+            long now = System.currentTimeMillis();
+
+            for (Map.Entry<CacheKey, Slot> entry : index.entrySet()) {
+                Slot slot = entry.getValue();
+                if (slot.offset >= end || slot.expiresAt <= now) {
+                    continue;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(slot.length);
+                readFully(source, buffer, slot.offset);
+                buffer.flip();
+                writeFully(target, buffer, targetSize);
+                moved.put(entry.getKey(), new Slot[] {slot, new Slot(targetSize, slot.length, slot.expiresAt)});
+                targetSize += slot.length;
+            }
+
+            lock.writeLock().lock();
+            try {
+                if (closed.get()) {
+                    target.close();
+                    Files.deleteIfExists(targetPath);
+                    return;
+                }
+
+                long tail = size - end;
+                long copied = 0;
+                while (copied < tail) {
+                    copied += source.transferTo(end + copied, tail - copied, target.position(targetSize + copied));
+                }
+                long shift = targetSize - end;
+
+                long live = 0;
+                for (Map.Entry<CacheKey, Slot> entry : index.entrySet()) {
+                    Slot slot = entry.getValue();
+                    Slot replacement;
+                    if (slot.offset >= end) {
+                        replacement = new Slot(slot.offset + shift, slot.length, slot.expiresAt);
+                    } else {
+                        Slot[] move = moved.get(entry.getKey());
+                        replacement = move != null && move[0] == slot ? move[1] : null;
+                    }
+                    if (replacement == null) {
+                        index.remove(entry.getKey(), slot);
+                    } else {
+                        entry.setValue(replacement);
+                        live += replacement.length;
+                    }
+                }
+
+                source.close();
+                Files.deleteIfExists(segmentPath(generation));
+
+                segment = target;
+                generation++;
+                size = targetSize + tail;
+                garbageBytes.set(size - live);
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            log.debug("Disk cache tier in {} compacted from {} to {} bytes", directory, end, targetSize);
+        } catch (IOException | RuntimeException e) {
+            target.close();
+            Files.deleteIfExists(targetPath);
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the newest segment in the directory, removing leftovers of interrupted compactions.
+     *
+     * @throws IOException if the directory cannot be listed or the segment opened
+     */
+    private void openLatestSegment() throws IOException {
+        long latest = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                latest = Math.max(latest, parseGeneration(file));
+            }
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                if (parseGeneration(file) != latest) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+
+        generation = latest;
+        segment = FileChannel.open(segmentPath(generation),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Rebuilds the index by scanning the segment, truncating a torn last record.
+     *
+     * @throws IOException if the segment cannot be read
+     */
+    private void recover() throws IOException {
+        long fileSize = segment.size();
+        long now = System.currentTimeMillis();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+
+        while (offset + HEADER_BYTES <= fileSize) {
+            header.clear();
+            readFully(segment, header, offset);
+            header.flip();
+            int length = header.getInt();
+            long expiresAt = header.getLong();
+            if (length <= HEADER_BYTES || offset + length > fileSize) {
+                break;
+            }
+
+            ByteBuffer record = ByteBuffer.allocate(length - HEADER_BYTES);
+            readFully(segment, record, offset + HEADER_BYTES);
+            CacheKey key;
+            try {
+                key = WeatherResponseCodec.readKey(new DataInputStream(new ByteArrayInputStream(record.array())));
+            } catch (IOException e) {
+                break;
+            }
+
+            if (expiresAt > now) {
+                release(index.put(key, new Slot(offset, length, expiresAt)));
+            } else {
+                garbageBytes.addAndGet(length);
+            }
+            offset += length;
+        }
+
+        if (offset < fileSize) {
+            log.warn("Truncating {} bytes of incomplete records in disk cache {}", fileSize - offset, directory);
+            segment.truncate(offset);
+        }
+        size = offset;
+    }
+
+    /**
+     * Accounts a record that is no longer referenced as garbage.
+     */
+    private void release(Slot slot) {
+        if (slot != null) {
+            garbageBytes.addAndGet(slot.length);
+        }
+    }
+
+    private Path segmentPath(long segmentGeneration) {
+        return directory.resolve(SEGMENT_PREFIX + segmentGeneration + SEGMENT_SUFFIX);
+    }
+
+    private static long parseGeneration(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] encode(CacheKey key, WeatherResponse value, long expiresAt) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeLong(expiresAt);
+        WeatherResponseCodec.writeKey(out, key);
+        WeatherResponseCodec.writeResponse(out, value);
+        out.flush();
+
+        byte[] record = bytes.toByteArray();
+        ByteBuffer.wrap(record).putInt(record.length);
+        return record;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of disk cache segment");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package ru.golubev.openweathersdk.internal;
+
+import lombok.experimental.UtilityClass;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.model.Weather;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+import ru.golubev.openweathersdk.model.Wind;
+
+/**
+ * Estimates the retained heap size of cache entries in bytes.
+ *
+ * <p>Used as the Caffeine weigher when a cache is bounded by
+ * {@code maxWeightBytes}, and to report cache footprints. Estimates assume
+ * a 64-bit JVM with compressed references and 8-byte object alignment.</p>
+ *
+ * <p><b>An entry consists of:</b></p>
+ * <ul>
+ *   <li>Cache bookkeeping - node, completed future and map slot</li>
+ *   <li>{@link CacheKey} with its city string</li>
+ *   <li>{@link WeatherResponse} with its nested objects, boxed fields and strings</li>
+ * </ul>
+ *
+ * @see CacheFactory
+ * @since 1.0
+ */
+@UtilityClass
+class EntryWeigher {
+
+    /**
+     * Cache node, completed future and hash table slot per entry.
+     */
+    private static final int ENTRY_OVERHEAD = 112;
+
+    private static final int KEY = 32;
+    private static final int RESPONSE = 56;
+    private static final int WEATHER = 24;
+    private static final int TEMPERATURE = 32;
+    private static final int BOXED = 16;
+    private static final int SYSTEM = 32;
+    private static final int STRING = 24;
+    private static final int ARRAY_HEADER = 16;
+
+    /**
+     * Estimates the size of a whole cache entry.
+     *
+     * @param key the cache key
+     * @param value the cached response
+     * @return estimated retained bytes
+     */
+    int weigh(CacheKey key, WeatherResponse value) {
+        return ENTRY_OVERHEAD + keyBytes(key) + responseBytes(value);
+    }
+
+    /**
+     * Estimates the size of a cache key with its city string.
+     *
+     * @param key the cache key
+     * @return estimated retained bytes
+     */
+    int keyBytes(CacheKey key) {
+        return keyBytes(key.city());
+    }
+
+    /**
+     * Estimates the size of a cache key for a city.
+     *
+     * @param city the normalized city name
+     * @return estimated retained bytes
+     */
+    int keyBytes(String city) {
+        return KEY + stringBytes(city);
+    }
+
+    /**
+     * Estimates the size of a response with all nested objects.
+     *
+     * @param response the response
+     * @return estimated retained bytes
+     */
+    int responseBytes(WeatherResponse response) {
+        int bytes = RESPONSE + stringBytes(response.getName());
+
+        Weather weather = response.getWeather();
+        if (weather != null) {
+            bytes += WEATHER + stringBytes(weather.getMain()) + stringBytes(weather.getDescription());
+        }
+        if (response.getTemperature() != null) {
+            bytes += TEMPERATURE;
+        }
+        if (response.getVisibility() != null) {
+            bytes += BOXED;
+        }
+        Wind wind = response.getWind();
+        if (wind != null) {
+            bytes += BOXED + (wind.getSpeed() != null ? BOXED : 0);
+        }
+        if (response.getSys() != null) {
+            bytes += SYSTEM;
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimates the size of a string, which is one byte per character for
+     * Latin-1 text and two bytes otherwise.
+     *
+     * @param value the string, may be null
+     * @return estimated retained bytes, zero for null
+     */
+    int stringBytes(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int bytesPerChar = 1;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                bytesPerChar = 2;
+                break;
+            }
+        }
+        return STRING + align(ARRAY_HEADER + value.length() * bytesPerChar);
+    }
+
+    private int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+}
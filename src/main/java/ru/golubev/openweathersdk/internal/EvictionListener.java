@@ -0,0 +1,29 @@
+package ru.golubev.openweathersdk.internal;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+
+/**
+ * Receives entries removed from a built-in store by expiration or eviction.
+ *
+ * <p>Unlike a Caffeine {@code RemovalListener}, it is also told how long the entry
+ * had left to live, so a lower tier can keep serving it only for that long.</p>
+ *
+ * @see CaffeineWeatherCache
+ * @see OffHeapWeatherCache
+ * @since 1.0
+ */
+@FunctionalInterface
+interface EvictionListener {
+
+    /**
+     * Called after an entry was removed.
+     *
+     * @param key the removed key
+     * @param value the removed response
+     * @param cause why the entry was removed
+     * @param remainingMillis lifetime the entry had left, or 0 if it expired
+     */
+    void onEviction(CacheKey key, WeatherResponse value, RemovalCause cause, long remainingMillis);
+}
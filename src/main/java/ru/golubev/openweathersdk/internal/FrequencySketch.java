@@ -0,0 +1,96 @@
+package ru.golubev.openweathersdk.internal;
+
+/**
+ * Count-min sketch estimating how often keys are accessed.
+ *
+ * <p>Keeps four 4-bit counters per key spread over a fixed table of longs, so the
+ * memory does not grow with the number of keys and recording an access costs four
+ * array updates. The estimate is the smallest of the four counters; collisions
+ * can only make it too high. {@link #age()} halves every counter, so estimates
+ * reflect recent popularity rather than lifetime totals.</p>
+ *
+ * <p>Updates are not synchronized. Concurrent increments of the same counter may
+ * be lost, which only lowers an estimate slightly and is cheaper than contention
+ * on the request path.</p>
+ *
+ * @see PollingWeatherClientImpl
+ * @see ResponseCache#recordAccess
+ * @since 1.0
+ */
+final class FrequencySketch {
+
+    /**
+     * Largest value of a 4-bit counter.
+     */
+    static final int MAX_FREQUENCY = 15;
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+    private static final int MAX_TABLE_SIZE = 1 << 24;
+
+    private final long[] table;
+    private final int tableMask;
+
+    /**
+     * Creates a sketch sized for the expected number of distinct keys.
+     *
+     * @param expectedKeys number of keys that are tracked at the same time
+     */
+    FrequencySketch(long expectedKeys) {
+        int size = Integer.highestOneBit((int) Math.max(16, Math.min(expectedKeys, MAX_TABLE_SIZE)) - 1) << 1;
+        this.table = new long[size];
+        this.tableMask = size - 1;
+    }
+
+    /**
+     * Records one access of the key, saturating at {@value #MAX_FREQUENCY}.
+     *
+     * @param key the accessed key
+     */
+    void increment(Object key) {
+        int hash = key.hashCode();
+        for (int depth = 0; depth < SEEDS.length; depth++) {
+            long h = rehash(hash, depth);
+            int index = (int) (h >>> 32) & tableMask;
+            int shift = (int) (h & 15) << 2;
+            long word = table[index];
+            if (((word >>> shift) & 15) < MAX_FREQUENCY) {
+                table[index] = word + (1L << shift);
+            }
+        }
+    }
+
+    /**
+     * Estimates the recent access count of the key.
+     *
+     * @param key the key
+     * @return estimated accesses since the key became popular, from 0 to {@value #MAX_FREQUENCY}
+     */
+    int frequency(Object key) {
+        int hash = key.hashCode();
+        int frequency = MAX_FREQUENCY;
+        for (int depth = 0; depth < SEEDS.length; depth++) {
+            long h = rehash(hash, depth);
+            int index = (int) (h >>> 32) & tableMask;
+            int shift = (int) (h & 15) << 2;
+            frequency = Math.min(frequency, (int) ((table[index] >>> shift) & 15));
+        }
+        return frequency;
+    }
+
+    /**
+     * Halves every counter, so keys that are no longer accessed decay to zero.
+     */
+    void age() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+    }
+
+    private static long rehash(int hash, int depth) {
+        long h = (hash + SEEDS[depth]) * SEEDS[depth];
+        return h ^ (h >>> 29);
+    }
+}
@@ -0,0 +1,183 @@
+package ru.golubev.openweathersdk.internal;
+
+import java.util.Arrays;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Geohash encoding used to snap coordinates to cache cells.
+ *
+ * <p>A geohash of precision {@code n} names a cell of the latitude/longitude grid;
+ * every point inside the cell has the same hash. Coordinate lookups are cached
+ * under the cell's key, so nearby requests share one cached response and one
+ * upstream call, which is made for the cell's center.</p>
+ *
+ * <p><b>Approximate cell size by precision:</b></p>
+ * <ul>
+ *   <li>4 - 39 x 19.5 km</li>
+ *   <li>5 - 4.9 x 4.9 km</li>
+ *   <li>6 - 1.2 x 0.61 km</li>
+ *   <li>7 - 153 x 153 m</li>
+ * </ul>
+ *
+ * <p>Cell keys are stored in the city part of {@link ru.golubev.openweathersdk.CacheKey}
+ * with the {@value #CELL_PREFIX} prefix, so every cache tier handles them like city names.</p>
+ *
+ * @see WeatherClientImpl
+ * @see OpenWeatherApi
+ * @since 1.0
+ */
+@UtilityClass
+class GeoHash {
+
+    /**
+     * Prefix distinguishing cell keys from city names.
+     */
+    static final String CELL_PREFIX = "geohash:";
+
+    /**
+     * Longest supported precision, below one meter.
+     */
+    static final int MAX_PRECISION = 12;
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    private static final int[] DECODE = new int[128];
+
+    static {
+        Arrays.fill(DECODE, -1);
+        for (int i = 0; i < BASE32.length; i++) {
+            DECODE[BASE32[i]] = i;
+        }
+    }
+
+    /**
+     * Returns the cache key of the cell containing the coordinates.
+     *
+     * @param latitude latitude in degrees, from -90 to 90
+     * @param longitude longitude in degrees, from -180 to 180
+     * @param precision geohash length, from 1 to {@value #MAX_PRECISION}
+     * @return {@value #CELL_PREFIX} followed by the geohash
+     * @throws IllegalArgumentException if a coordinate or the precision is out of range
+     */
+    String cellKey(double latitude, double longitude, int precision) {
+        return CELL_PREFIX + encode(latitude, longitude, precision);
+    }
+
+    /**
+     * Checks whether a cache key city is a cell key.
+     *
+     * @param city the city part of a cache key
+     * @return true for keys created by {@link #cellKey}
+     */
+    boolean isCellKey(String city) {
+        return city.startsWith(CELL_PREFIX);
+    }
+
+    /**
+     * Returns the center of the cell named by a cell key.
+     *
+     * @param cellKey key created by {@link #cellKey}
+     * @return latitude and longitude of the cell center
+     * @throws IllegalArgumentException if the key is not a valid cell key
+     */
+    double[] cellCenter(String cellKey) {
+        return decodeCenter(cellKey.substring(CELL_PREFIX.length()));
+    }
+
+    /**
+     * Encodes coordinates as a geohash.
+     *
+     * @param latitude latitude in degrees, from -90 to 90
+     * @param longitude longitude in degrees, from -180 to 180
+     * @param precision geohash length, from 1 to {@value #MAX_PRECISION}
+     * @return the geohash
+     * @throws IllegalArgumentException if a coordinate or the precision is out of range
+     */
+    String encode(double latitude, double longitude, int precision) {
+        if (!(latitude >= -90 && latitude <= 90) || !(longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("Coordinates out of range: " + latitude + ", " + longitude);
+        }
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(
+                "Geohash precision must be between 1 and " + MAX_PRECISION + ", got " + precision);
+        }
+
+        double minLat = -90;
+        double maxLat = 90;
+        double minLon = -180;
+        double maxLon = 180;
+        char[] hash = new char[precision];
+        boolean evenBit = true;
+        for (int i = 0; i < precision; i++) {
+            int index = 0;
+            for (int bit = 0; bit < 5; bit++) {
+                index <<= 1;
+                if (evenBit) {
+                    double mid = (minLon + maxLon) / 2;
+                    if (longitude >= mid) {
+                        index |= 1;
+                        minLon = mid;
+                    } else {
+                        maxLon = mid;
+                    }
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (latitude >= mid) {
+                        index |= 1;
+                        minLat = mid;
+                    } else {
+                        maxLat = mid;
+                    }
+                }
+                evenBit = !evenBit;
+            }
+            hash[i] = BASE32[index];
+        }
+        return new String(hash);
+    }
+
+    /**
+     * Decodes a geohash to the center of its cell.
+     *
+     * @param hash the geohash
+     * @return latitude and longitude of the cell center
+     * @throws IllegalArgumentException if the hash is empty or contains invalid characters
+     */
+    double[] decodeCenter(String hash) {
+        if (hash.isEmpty() || hash.length() > MAX_PRECISION) {
+            throw new IllegalArgumentException("Invalid geohash: " + hash);
+        }
+
+        double minLat = -90;
+        double maxLat = 90;
+        double minLon = -180;
+        double maxLon = 180;
+        boolean evenBit = true;
+        for (int i = 0; i < hash.length(); i++) {
+            char c = hash.charAt(i);
+            int index = c < DECODE.length ? DECODE[c] : -1;
+            if (index < 0) {
+                throw new IllegalArgumentException("Invalid geohash: " + hash);
+            }
+            for (int bit = 4; bit >= 0; bit--) {
+                boolean set = (index >> bit & 1) == 1;
+                if (evenBit) {
+                    double mid = (minLon + maxLon) / 2;
+                    if (set) {
+                        minLon = mid;
+                    } else {
+                        maxLon = mid;
+                    }
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (set) {
+                        minLat = mid;
+                    } else {
+                        maxLat = mid;
+                    }
+                }
+                evenBit = !evenBit;
+            }
+        }
+        return new double[] {(minLat + maxLat) / 2, (minLon + maxLon) / 2};
+    }
+}
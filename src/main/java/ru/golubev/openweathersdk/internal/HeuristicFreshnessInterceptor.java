@@ -0,0 +1,51 @@
+package ru.golubev.openweathersdk.internal;
+
+import java.io.IOException;
+import lombok.RequiredArgsConstructor;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Network interceptor assigning a freshness lifetime to responses without one.
+ *
+ * <p>OkHttp's response cache treats a response without {@code Cache-Control} or
+ * {@code Expires} as immediately stale, so every later call goes upstream. This
+ * interceptor adds {@code Cache-Control: max-age} to such responses before they
+ * are stored, letting the cache answer repeated calls from disk until the
+ * configured freshness runs out. Validators like {@code ETag} and
+ * {@code Last-Modified} are kept, so stale entries are revalidated with
+ * conditional requests where the upstream supports them.</p>
+ *
+ * <p><b>Responses left unchanged:</b></p>
+ * <ul>
+ *   <li>Responses to methods other than GET</li>
+ *   <li>Unsuccessful responses, including {@code 304 Not Modified}</li>
+ *   <li>Responses with an explicit {@code Cache-Control} or {@code Expires} header</li>
+ * </ul>
+ *
+ * @see HttpClientFactory
+ * @since 1.0
+ */
+@RequiredArgsConstructor
+final class HeuristicFreshnessInterceptor implements Interceptor {
+
+    /**
+     * Freshness lifetime assigned to responses without caching headers.
+     */
+    private final long maxAgeSeconds;
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+
+        if (!"GET".equals(chain.request().method())
+            || !response.isSuccessful()
+            || response.header("Cache-Control") != null
+            || response.header("Expires") != null) {
+            return response;
+        }
+        return response.newBuilder()
+            .header("Cache-Control", "max-age=" + maxAgeSeconds)
+            .build();
+    }
+}
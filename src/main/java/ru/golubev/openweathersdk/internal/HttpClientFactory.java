@@ -1,6 +1,8 @@
 package ru.golubev.openweathersdk.internal;
 
+import java.time.Duration;
 import java.util.Optional;
+import okhttp3.Cache;
 import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 import ru.golubev.openweathersdk.WeatherSdkConfigurer.HttpClientConfigurer;
@@ -17,6 +19,7 @@ import ru.golubev.openweathersdk.WeatherSdkConfigurer.HttpClientConfigurer;
  *   <li>Connection pooling and reuse</li>
  *   <li>Concurrent request limiting</li>
  *   <li>Custom executor support</li>
+ *   <li>Optional on-disk HTTP response cache with conditional revalidation</li>
  * </ul>
  *
  * <p><b>Example usage:</b></p>
@@ -41,6 +44,8 @@ class HttpClientFactory {
      * @param configurer the HTTP client configuration specifying timeouts and concurrency
      * @return configured OkHttpClient instance ready for use
      * @throws NullPointerException if configurer is null
+     * @throws IllegalArgumentException if the HTTP cache size is not positive or the
+     *                                  heuristic freshness is negative
      *
      * <p><b>Configuration applied:</b></p>
      * <ul>
@@ -50,6 +55,9 @@ class HttpClientFactory {
      *   <li>{@code callTimeout} - complete call timeout</li>
      *   <li>{@code maxConcurrentRequests} - limits concurrent requests</li>
      *   <li>{@code executor} - custom executor for async operations (optional)</li>
+     *   <li>{@code cacheDirectory}, {@code cacheMaxBytes} - OkHttp response cache (optional)</li>
+     *   <li>{@code heuristicFreshness} - {@link HeuristicFreshnessInterceptor} as a network
+     *       interceptor when the response cache is enabled</li>
      * </ul>
      *
      * <p><b>Dispatcher configuration:</b></p>
@@ -77,12 +85,40 @@ class HttpClientFactory {
         dispatcher.setMaxRequests(configurer.maxConcurrentRequests());
         dispatcher.setMaxRequestsPerHost(configurer.maxConcurrentRequests());
 
-        return new OkHttpClient.Builder()
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
                 .connectTimeout(configurer.connectTimeout())
                 .readTimeout(configurer.readTimeout())
                 .writeTimeout(configurer.writeTimeout())
                 .callTimeout(configurer.callTimeout())
-                .dispatcher(dispatcher)
-                .build();
+                .dispatcher(dispatcher);
+        if (configurer.cacheDirectory() != null) {
+            applyCache(builder, configurer);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Adds the on-disk response cache and the heuristic freshness interceptor.
+     *
+     * @param builder the client builder
+     * @param configurer the HTTP client configuration
+     * @throws IllegalArgumentException if the cache size is not positive or the
+     *                                  heuristic freshness is negative
+     */
+    private static void applyCache(OkHttpClient.Builder builder, HttpClientConfigurer configurer) {
+        if (configurer.cacheMaxBytes() <= 0) {
+            throw new IllegalArgumentException("cacheMaxBytes must be positive, got " + configurer.cacheMaxBytes());
+        }
+        Duration freshness = configurer.heuristicFreshness();
+        if (freshness.isNegative()) {
+            throw new IllegalArgumentException("heuristicFreshness must not be negative, got " + freshness);
+        }
+
+        builder.cache(new Cache(configurer.cacheDirectory().toFile(), configurer.cacheMaxBytes()));
+        if (!freshness.isZero()) {
+            // max-age has whole seconds; rounding down would turn sub-second values into no freshness
+            long seconds = freshness.getSeconds() + (freshness.getNano() > 0 ? 1 : 0);
+            builder.addNetworkInterceptor(new HeuristicFreshnessInterceptor(seconds));
+        }
     }
 }
\ No newline at end of file
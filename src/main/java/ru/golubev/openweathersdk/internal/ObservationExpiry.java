@@ -0,0 +1,155 @@
+package ru.golubev.openweathersdk.internal;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+
+/**
+ * Expires entries shortly after the next observation of their city is expected.
+ *
+ * <p>OpenWeather publishes a new observation per station only every few minutes,
+ * and the observation time is returned as {@link WeatherResponse#getDatetime()}.
+ * A fixed TTL either keeps data that was already old when fetched for a full
+ * TTL, or refetches data that cannot have changed yet. This policy instead
+ * learns how often each city's observation time advances and lets an entry
+ * live until just after the next one is due.</p>
+ *
+ * <p><b>Lifetime of an entry:</b></p>
+ * <ol>
+ *   <li>The city's cadence is the moving average of observed {@code dt} steps,
+ *       {@value #DEFAULT_CADENCE_SECONDS} seconds until a step has been seen; a step
+ *       spanning several expected observations counts as that many steps</li>
+ *   <li>The next observation is expected at {@code dt + cadence}, plus a
+ *       publication margin of {@value #PUBLICATION_MARGIN_SECONDS} seconds</li>
+ *   <li>The entry lives until then, but at least the minimum and at most the
+ *       maximum lifetime</li>
+ *   <li>If the next observation is already overdue, the entry lives for the
+ *       minimum lifetime before the city is checked again</li>
+ * </ol>
+ *
+ * <p>Responses without an observation time use the maximum lifetime.</p>
+ *
+ * @see CacheFactory
+ * @since 1.0
+ */
+final class ObservationExpiry implements Expiry<CacheKey, WeatherResponse> {
+
+    /**
+     * Assumed interval between observations before a city's cadence is known.
+     */
+    static final long DEFAULT_CADENCE_SECONDS = 600;
+
+    /**
+     * Expected delay between the observation time and its availability.
+     */
+    static final long PUBLICATION_MARGIN_SECONDS = 30;
+
+    /**
+     * Weight of the newest step in the cadence average.
+     */
+    private static final double SMOOTHING = 0.3;
+
+    /**
+     * Shortest and longest observation steps taken into account.
+     */
+    private static final long MIN_STEP_SECONDS = 60;
+    private static final long MAX_STEP_SECONDS = 3 * 60 * 60;
+
+    /**
+     * Maximum number of cities whose cadence is remembered.
+     */
+    private static final long MAX_TRACKED_CITIES = 16_384;
+
+    /**
+     * Latest observation time and average step of one city.
+     */
+    @RequiredArgsConstructor
+    private static final class Cadence {
+        private final long lastObservation;
+        private final double stepSeconds;
+    }
+
+    private final long minLifetimeNanos;
+    private final long maxLifetimeNanos;
+
+    /**
+     * Cadence per city name, shared by all languages and units of the city.
+     */
+    private final Cache<String, Cadence> cadences = Caffeine.newBuilder()
+        .maximumSize(MAX_TRACKED_CITIES)
+        .expireAfterAccess(Duration.ofDays(1))
+        .build();
+
+    /**
+     * Creates the policy.
+     *
+     * @param minLifetime shortest lifetime of an entry
+     * @param maxLifetime longest lifetime of an entry
+     */
+    ObservationExpiry(Duration minLifetime, Duration maxLifetime) {
+        this.minLifetimeNanos = minLifetime.toNanos();
+        this.maxLifetimeNanos = maxLifetime.toNanos();
+    }
+
+    @Override
+    public long expireAfterCreate(CacheKey key, WeatherResponse value, long currentTime) {
+        return lifetimeNanos(key, value);
+    }
+
+    @Override
+    public long expireAfterUpdate(CacheKey key, WeatherResponse value, long currentTime, long currentDuration) {
+        return lifetimeNanos(key, value);
+    }
+
+    @Override
+    public long expireAfterRead(CacheKey key, WeatherResponse value, long currentTime, long currentDuration) {
+        return currentDuration;
+    }
+
+    /**
+     * Records the observation of the response and computes its lifetime.
+     *
+     * @param key the cache key
+     * @param value the loaded response
+     * @return lifetime in nanoseconds
+     */
+    long lifetimeNanos(CacheKey key, WeatherResponse value) {
+        long observation = value.getDatetime();
+        if (observation <= 0) {
+            return maxLifetimeNanos;
+        }
+
+        Cadence cadence = cadences.asMap().compute(key.city(), (city, previous) -> observe(previous, observation));
+        long nextObservationMillis = TimeUnit.SECONDS.toMillis(
+            observation + Math.round(cadence.stepSeconds) + PUBLICATION_MARGIN_SECONDS);
+        long lifetime = TimeUnit.MILLISECONDS.toNanos(nextObservationMillis - System.currentTimeMillis());
+
+        return Math.max(minLifetimeNanos, Math.min(maxLifetimeNanos, lifetime));
+    }
+
+    /**
+     * Updates the cadence of a city with a new observation time.
+     */
+    private static Cadence observe(Cadence previous, long observation) {
+        if (previous == null) {
+            return new Cadence(observation, DEFAULT_CADENCE_SECONDS);
+        }
+        if (observation <= previous.lastObservation) {
+            return previous;
+        }
+
+        long step = observation - previous.lastObservation;
+        if (step < MIN_STEP_SECONDS || step > MAX_STEP_SECONDS) {
+            return new Cadence(observation, previous.stepSeconds);
+        }
+        // Without reads in between, several observations may have been skipped
+        long skipped = Math.max(1, Math.round(step / previous.stepSeconds));
+        double sample = (double) step / skipped;
+        return new Cadence(observation, SMOOTHING * sample + (1 - SMOOTHING) * previous.stepSeconds);
+    }
+}
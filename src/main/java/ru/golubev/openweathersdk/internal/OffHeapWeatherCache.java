@@ -0,0 +1,620 @@
+package ru.golubev.openweathersdk.internal;
+
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import ru.golubev.openweathersdk.CacheFootprint;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.WeatherCache;
+import ru.golubev.openweathersdk.WeatherCacheStats;
+import ru.golubev.openweathersdk.model.System;
+import ru.golubev.openweathersdk.model.Temperature;
+import ru.golubev.openweathersdk.model.Weather;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+import ru.golubev.openweathersdk.model.Wind;
+
+/**
+ * Weather cache keeping responses as fixed-width records in direct memory.
+ *
+ * <p>A response cached on the heap is a graph of five objects with boxed fields
+ * and strings, several hundred bytes per entry. This cache writes the primitive
+ * fields of each response into an {@value #RECORD_BYTES}-byte record of a single
+ * direct buffer, indexed by slot, and keeps strings in a reference-counted
+ * dictionary shared by all records. Large caches therefore add almost nothing
+ * the garbage collector has to trace. Responses are materialized on every read.</p>
+ *
+ * <p><b>Characteristics:</b></p>
+ * <ul>
+ *   <li>Capacity fixed at construction; the buffer is allocated up front</li>
+ *   <li>CLOCK eviction approximating LRU once full</li>
+ *   <li>Expiration checked on read and during {@link #cleanUp()}</li>
+ *   <li>Optimistic lock-free reads; writes are exclusive</li>
+ *   <li>No background refresh</li>
+ * </ul>
+ *
+ * @see WeatherCache
+ * @see CacheFactory
+ * @since 1.0
+ */
+final class OffHeapWeatherCache implements WeatherCache {
+
+    /**
+     * Size of one record in the buffer.
+     */
+    static final int RECORD_BYTES = 80;
+
+    private static final int EXPIRES_AT = 0;
+    private static final int DATETIME = 8;
+    private static final int SUNRISE = 16;
+    private static final int SUNSET = 24;
+    private static final int TEMP = 32;
+    private static final int FEELS_LIKE = 40;
+    private static final int WIND_SPEED = 48;
+    private static final int VISIBILITY = 56;
+    private static final int TIMEZONE = 60;
+    private static final int MAIN = 64;
+    private static final int DESCRIPTION = 68;
+    private static final int NAME = 72;
+    private static final int FLAGS = 76;
+
+    private static final int HAS_VISIBILITY = 1;
+    private static final int HAS_WIND_SPEED = 1 << 1;
+    private static final int HAS_WEATHER = 1 << 2;
+    private static final int HAS_TEMPERATURE = 1 << 3;
+    private static final int HAS_WIND = 1 << 4;
+    private static final int HAS_SYS = 1 << 5;
+    private static final int STALE = 1 << 6;
+
+
+    /**
+     * Heap overhead of a dictionary string: map node, boxed id and array slots.
+     */
+    private static final int DICTIONARY_ENTRY_BYTES = 56;
+
+    /**
+     * Dictionary id of a null string.
+     */
+    private static final int NO_STRING = -1;
+
+    /**
+     * Heap overhead of an index entry: map node and boxed slot.
+     */
+    private static final int INDEX_ENTRY_BYTES = 48;
+
+    /**
+     * City name length assumed when sizing the cache by a byte budget.
+     */
+    private static final int TYPICAL_CITY_LENGTH = 16;
+
+    /**
+     * Estimated bytes of one entry: its record, index entry and key, and the
+     * dictionary entry of its city name, which is rarely shared. Descriptions are
+     * shared by many entries and not counted.
+     */
+    static final int ESTIMATED_ENTRY_BYTES = RECORD_BYTES + INDEX_ENTRY_BYTES
+        + EntryWeigher.keyBytes("x".repeat(TYPICAL_CITY_LENGTH))
+        + DICTIONARY_ENTRY_BYTES + EntryWeigher.stringBytes("x".repeat(TYPICAL_CITY_LENGTH));
+
+    private final int capacity;
+    private final Expiry<CacheKey, WeatherResponse> expiry;
+    private final EvictionListener evictionListener;
+    private final CacheStatsRecorder stats;
+    private final Executor executor = ForkJoinPool.commonPool();
+
+    /**
+     * Records of all slots, {@link #RECORD_BYTES} each.
+     */
+    private final ByteBuffer records;
+
+    /**
+     * Key owning each slot, or null for free slots.
+     */
+    private final CacheKey[] slotKeys;
+
+    /**
+     * CLOCK reference bits. Written by readers without synchronization;
+     * a lost update only affects the choice of eviction victim.
+     */
+    private final byte[] referenced;
+
+    private final ConcurrentMap<CacheKey, Integer> index = new ConcurrentHashMap<>();
+    private final ConcurrentMap<CacheKey, CompletableFuture<WeatherResponse>> inFlight = new ConcurrentHashMap<>();
+    private final StampedLock lock = new StampedLock();
+    private final StringDictionary strings = new StringDictionary();
+
+    // Guarded by the write lock.
+    private final int[] freeSlots;
+    private int freeCount;
+    private int allocated;
+    private int clockHand;
+
+    /**
+     * Creates a cache and allocates its buffer.
+     *
+     * @param capacity maximum number of entries
+     * @param expiry computes the lifetime of loaded entries
+     * @param evictionListener receives entries removed by expiration or eviction
+     * @param stats receives hits, misses, loads and evictions
+     * @throws IllegalArgumentException if the capacity does not fit in one buffer
+     */
+    OffHeapWeatherCache(long capacity,
+                         Expiry<CacheKey, WeatherResponse> expiry,
+                         EvictionListener evictionListener,
+                         CacheStatsRecorder stats) {
+        if (capacity < 0 || capacity > Integer.MAX_VALUE / RECORD_BYTES) {
+            throw new IllegalArgumentException(
+                "Off-heap cache size must be between 0 and " + Integer.MAX_VALUE / RECORD_BYTES + ", got " + capacity);
+        }
+        this.capacity = (int) capacity;
+        this.expiry = expiry;
+        this.evictionListener = evictionListener;
+        this.stats = stats;
+        this.records = ByteBuffer.allocateDirect(this.capacity * RECORD_BYTES);
+        this.slotKeys = new CacheKey[this.capacity];
+        this.referenced = new byte[this.capacity];
+        this.freeSlots = new int[this.capacity];
+    }
+
+    @Override
+    public CompletableFuture<WeatherResponse> getIfPresent(CacheKey key) {
+        WeatherResponse value = lookup(key);
+        if (value != null) {
+            stats.recordHits(1);
+            return CompletableFuture.completedFuture(value);
+        }
+        CompletableFuture<WeatherResponse> loading = inFlight.get(key);
+        if (loading != null) {
+            stats.recordHits(1);
+        }
+        return loading;
+    }
+
+    @Override
+    public CompletableFuture<WeatherResponse> get(CacheKey key,
+                                                  BiFunction<CacheKey, Executor, CompletableFuture<WeatherResponse>> loader) {
+        WeatherResponse value = lookup(key);
+        if (value != null) {
+            stats.recordHits(1);
+            return CompletableFuture.completedFuture(value);
+        }
+
+        CompletableFuture<WeatherResponse> created = new CompletableFuture<>();
+        CompletableFuture<WeatherResponse> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            stats.recordHits(1);
+            return existing;
+        }
+
+        // A load may have completed between the lookup and registering this one.
+        value = lookup(key);
+        if (value != null) {
+            inFlight.remove(key, created);
+            created.complete(value);
+            stats.recordHits(1);
+            return created;
+        }
+
+        stats.recordMisses(1);
+        long startTime = java.lang.System.nanoTime();
+        CompletableFuture<WeatherResponse> load;
+        try {
+            load = loader.apply(key, executor);
+        } catch (RuntimeException e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        load.whenComplete((response, error) -> {
+            long loadTime = java.lang.System.nanoTime() - startTime;
+            if (error == null && response != null) {
+                stats.recordLoadSuccess(loadTime);
+                store(key, response, expiry.expireAfterCreate(key, response, java.lang.System.nanoTime()), false);
+            } else {
+                stats.recordLoadFailure(loadTime);
+            }
+            inFlight.remove(key, created);
+            if (error != null) {
+                created.completeExceptionally(error);
+            } else {
+                created.complete(response);
+            }
+        });
+        return created;
+    }
+
+    @Override
+    public Set<CacheKey> keys() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    @Override
+    public void put(CacheKey key, WeatherResponse value) {
+        store(key, value, expiry.expireAfterCreate(key, value, java.lang.System.nanoTime()), false);
+    }
+
+    @Override
+    public void putIfAbsent(CacheKey key, WeatherResponse value, long lifetimeMillis) {
+        store(key, value, TimeUnit.MILLISECONDS.toNanos(lifetimeMillis), true);
+    }
+
+    @Override
+    public void forEach(EntryConsumer consumer) {
+        long stamp = lock.readLock();
+        try {
+            long now = java.lang.System.nanoTime();
+            for (int slot = 0; slot < allocated; slot++) {
+                CacheKey key = slotKeys[slot];
+                long remaining = records.getLong(offset(slot) + EXPIRES_AT) - now;
+                if (key != null && remaining > 0) {
+                    consumer.accept(key, readRecord(slot), TimeUnit.NANOSECONDS.toMillis(remaining));
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Counts the record of each entry, its key and index entry, and the
+     * entry's share of the string dictionary.</p>
+     */
+    @Override
+    public CacheFootprint footprint() {
+        long stamp = lock.readLock();
+        try {
+            long bytes = strings.bytes;
+            for (CacheKey key : index.keySet()) {
+                bytes += RECORD_BYTES + INDEX_ENTRY_BYTES + EntryWeigher.keyBytes(key);
+            }
+            return new CacheFootprint(index.size(), bytes);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void invalidate(CacheKey key) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotOf(key);
+            if (slot >= 0) {
+                free(slot);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public WeatherCacheStats stats() {
+        return stats.snapshot(footprint());
+    }
+
+    @Override
+    public void invalidateAll() {
+        long stamp = lock.writeLock();
+        try {
+            index.clear();
+            Arrays.fill(slotKeys, null);
+            Arrays.fill(referenced, (byte) 0);
+            strings.clear();
+            freeCount = 0;
+            allocated = 0;
+            clockHand = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void cleanUp() {
+        List<CacheKey> expiredKeys = new ArrayList<>();
+        List<WeatherResponse> expiredValues = new ArrayList<>();
+
+        long stamp = lock.writeLock();
+        try {
+            long now = java.lang.System.nanoTime();
+            for (int slot = 0; slot < allocated; slot++) {
+                if (slotKeys[slot] != null && records.getLong(offset(slot) + EXPIRES_AT) - now <= 0) {
+                    expiredKeys.add(slotKeys[slot]);
+                    expiredValues.add(readRecord(slot));
+                    free(slot);
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        for (int i = 0; i < expiredKeys.size(); i++) {
+            stats.recordEviction(1, RemovalCause.EXPIRED);
+            evictionListener.onEviction(expiredKeys.get(i), expiredValues.get(i), RemovalCause.EXPIRED, 0);
+        }
+    }
+
+    /**
+     * Reads the current response for the key, expiring it if it is too old.
+     *
+     * @return the response, or null if absent or expired
+     */
+    private WeatherResponse lookup(CacheKey key) {
+        long stamp = lock.tryOptimisticRead();
+        int slot = slotOf(key);
+        long expiresAt = slot >= 0 ? records.getLong(offset(slot) + EXPIRES_AT) : 0;
+        WeatherResponse value = slot >= 0 ? readRecord(slot) : null;
+
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                slot = slotOf(key);
+                expiresAt = slot >= 0 ? records.getLong(offset(slot) + EXPIRES_AT) : 0;
+                value = slot >= 0 ? readRecord(slot) : null;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        if (value == null) {
+            return null;
+        }
+        if (expiresAt - java.lang.System.nanoTime() <= 0) {
+            expire(key);
+            return null;
+        }
+        referenced[slot] = 1;
+        return value;
+    }
+
+    /**
+     * Removes the entry for the key if it has expired and reports it.
+     */
+    private void expire(CacheKey key) {
+        WeatherResponse removed = null;
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotOf(key);
+            if (slot >= 0 && records.getLong(offset(slot) + EXPIRES_AT) - java.lang.System.nanoTime() <= 0) {
+                removed = readRecord(slot);
+                free(slot);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (removed != null) {
+            stats.recordEviction(1, RemovalCause.EXPIRED);
+            evictionListener.onEviction(key, removed, RemovalCause.EXPIRED, 0);
+        }
+    }
+
+    /**
+     * Writes the response into the slot of the key, allocating or evicting a slot if needed.
+     */
+    private void store(CacheKey key, WeatherResponse value, long lifetime, boolean onlyIfAbsent) {
+        if (capacity == 0) {
+            stats.recordEviction(1, RemovalCause.SIZE);
+            evictionListener.onEviction(key, value, RemovalCause.SIZE, TimeUnit.NANOSECONDS.toMillis(lifetime));
+            return;
+        }
+
+        CacheKey victimKey = null;
+        WeatherResponse victim = null;
+        RemovalCause cause = null;
+        long victimRemaining = 0;
+
+        long stamp = lock.writeLock();
+        try {
+            long now = java.lang.System.nanoTime();
+            int slot = slotOf(key);
+            if (slot >= 0) {
+                if (onlyIfAbsent) {
+                    return;
+                }
+                releaseStrings(slot);
+            } else {
+                if (freeCount > 0) {
+                    slot = freeSlots[--freeCount];
+                } else if (allocated < capacity) {
+                    slot = allocated++;
+                } else {
+                    slot = nextVictim();
+                    victimKey = slotKeys[slot];
+                    victim = readRecord(slot);
+                    victimRemaining = Math.max(0, records.getLong(offset(slot) + EXPIRES_AT) - now);
+                    cause = victimRemaining == 0 ? RemovalCause.EXPIRED : RemovalCause.SIZE;
+                    index.remove(victimKey);
+                    releaseStrings(slot);
+                }
+                slotKeys[slot] = key;
+                index.put(key, slot);
+            }
+            writeRecord(slot, value, now + lifetime);
+            referenced[slot] = 1;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        if (victim != null) {
+            stats.recordEviction(1, cause);
+            evictionListener.onEviction(victimKey, victim, cause, TimeUnit.NANOSECONDS.toMillis(victimRemaining));
+        }
+    }
+
+    /**
+     * Advances the clock hand to the first slot not referenced since the last pass.
+     * Must be called with the write lock held when all slots are occupied.
+     */
+    private int nextVictim() {
+        while (true) {
+            int slot = clockHand;
+            clockHand = (clockHand + 1) % capacity;
+            if (referenced[slot] == 0) {
+                return slot;
+            }
+            referenced[slot] = 0;
+        }
+    }
+
+    /**
+     * Returns the slot to the free list. Must be called with the write lock held.
+     */
+    private void free(int slot) {
+        index.remove(slotKeys[slot]);
+        releaseStrings(slot);
+        slotKeys[slot] = null;
+        referenced[slot] = 0;
+        freeSlots[freeCount++] = slot;
+    }
+
+    private int slotOf(CacheKey key) {
+        Integer slot = index.get(key);
+        return slot != null && slotKeys[slot] == key ? slot : -1;
+    }
+
+    private static int offset(int slot) {
+        return slot * RECORD_BYTES;
+    }
+
+    private void writeRecord(int slot, WeatherResponse response, long expiresAt) {
+        Weather weather = response.getWeather();
+        Temperature temperature = response.getTemperature();
+        Double windSpeed = response.getWind() != null ? response.getWind().getSpeed() : null;
+        System sys = response.getSys();
+
+        int flags = 0;
+        flags |= response.getVisibility() != null ? HAS_VISIBILITY : 0;
+        flags |= windSpeed != null ? HAS_WIND_SPEED : 0;
+        flags |= weather != null ? HAS_WEATHER : 0;
+        flags |= temperature != null ? HAS_TEMPERATURE : 0;
+        flags |= response.getWind() != null ? HAS_WIND : 0;
+        flags |= sys != null ? HAS_SYS : 0;
+        flags |= response.isStale() ? STALE : 0;
+
+        int base = offset(slot);
+        records.putLong(base + EXPIRES_AT, expiresAt);
+        records.putLong(base + DATETIME, response.getDatetime());
+        records.putLong(base + SUNRISE, sys != null ? sys.getSunrise() : 0L);
+        records.putLong(base + SUNSET, sys != null ? sys.getSunset() : 0L);
+        records.putDouble(base + TEMP, temperature != null ? temperature.getTemp() : 0.0);
+        records.putDouble(base + FEELS_LIKE, temperature != null ? temperature.getFeels_like() : 0.0);
+        records.putDouble(base + WIND_SPEED, windSpeed != null ? windSpeed : 0.0);
+        records.putInt(base + VISIBILITY, response.getVisibility() != null ? response.getVisibility() : 0);
+        records.putInt(base + TIMEZONE, response.getTimezone());
+        records.putInt(base + MAIN, strings.acquire(weather != null ? weather.getMain() : null));
+        records.putInt(base + DESCRIPTION, strings.acquire(weather != null ? weather.getDescription() : null));
+        records.putInt(base + NAME, strings.acquire(response.getName()));
+        records.putInt(base + FLAGS, flags);
+    }
+
+    private WeatherResponse readRecord(int slot) {
+        int base = offset(slot);
+        int flags = records.getInt(base + FLAGS);
+        return new WeatherResponse(
+            (flags & HAS_WEATHER) != 0
+                ? new Weather(strings.get(records.getInt(base + MAIN)), strings.get(records.getInt(base + DESCRIPTION)))
+                : null,
+            (flags & HAS_TEMPERATURE) != 0
+                ? new Temperature(records.getDouble(base + TEMP), records.getDouble(base + FEELS_LIKE))
+                : null,
+            (flags & HAS_VISIBILITY) != 0 ? Integer.valueOf(records.getInt(base + VISIBILITY)) : null,
+            (flags & HAS_WIND) != 0
+                ? new Wind((flags & HAS_WIND_SPEED) != 0 ? Double.valueOf(records.getDouble(base + WIND_SPEED)) : null)
+                : null,
+            records.getLong(base + DATETIME),
+            (flags & HAS_SYS) != 0 ? new System(records.getLong(base + SUNRISE), records.getLong(base + SUNSET)) : null,
+            records.getInt(base + TIMEZONE),
+            strings.get(records.getInt(base + NAME)),
+            (flags & STALE) != 0
+        );
+    }
+
+    private void releaseStrings(int slot) {
+        int base = offset(slot);
+        strings.release(records.getInt(base + MAIN));
+        strings.release(records.getInt(base + DESCRIPTION));
+        strings.release(records.getInt(base + NAME));
+    }
+
+    /**
+     * Reference-counted string table shared by all records.
+     *
+     * <p>Weather descriptions repeat across most cities, so each distinct string
+     * is held once. Ids of strings no longer used by any record are reused.
+     * Mutated under the store's write lock; {@link #get} is safe for optimistic readers.</p>
+     */
+    private static final class StringDictionary {
+
+        private final Map<String, Integer> ids = new HashMap<>();
+        private volatile String[] values = new String[16];
+        private int[] refCounts = new int[16];
+        private int[] freeIds = new int[16];
+        private int freeCount;
+        private int size;
+
+        /**
+         * Estimated heap size of the stored strings.
+         */
+        private long bytes;
+
+        int acquire(String value) {
+            if (value == null) {
+                return NO_STRING;
+            }
+            Integer existing = ids.get(value);
+            if (existing != null) {
+                refCounts[existing]++;
+                return existing;
+            }
+
+            int id = freeCount > 0 ? freeIds[--freeCount] : size++;
+            if (id == values.length) {
+                values = Arrays.copyOf(values, id * 2);
+                refCounts = Arrays.copyOf(refCounts, id * 2);
+                freeIds = Arrays.copyOf(freeIds, id * 2);
+            }
+            values[id] = value;
+            refCounts[id] = 1;
+            bytes += EntryWeigher.stringBytes(value) + DICTIONARY_ENTRY_BYTES;
+            ids.put(value, id);
+            return id;
+        }
+
+        void release(int id) {
+            if (id == NO_STRING || --refCounts[id] > 0) {
+                return;
+            }
+            ids.remove(values[id]);
+            bytes -= EntryWeigher.stringBytes(values[id]) + DICTIONARY_ENTRY_BYTES;
+            values[id] = null;
+            freeIds[freeCount++] = id;
+        }
+
+        String get(int id) {
+            String[] current = values;
+            return id >= 0 && id < current.length ? current[id] : null;
+        }
+
+        void clear() {
+            ids.clear();
+            values = new String[16];
+            refCounts = new int[16];
+            freeIds = new int[16];
+            freeCount = 0;
+            size = 0;
+            bytes = 0;
+        }
+    }
+}
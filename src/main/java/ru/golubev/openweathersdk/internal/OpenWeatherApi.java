@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.Locale;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.RequiredArgsConstructor;
@@ -13,6 +14,7 @@ import okhttp3.Call;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import ru.golubev.openweathersdk.CacheKey;
 import ru.golubev.openweathersdk.SupportedLanguage;
 import ru.golubev.openweathersdk.Units;
 import ru.golubev.openweathersdk.exception.OpenWeatherApiClientException;
@@ -83,6 +85,12 @@ public final class OpenWeatherApi {
      */
     private static final String CITY_QUERY_PARAM = "q";
 
+    /**
+     * Query parameter names for coordinates.
+     */
+    private static final String LATITUDE_QUERY_PARAM = "lat";
+    private static final String LONGITUDE_QUERY_PARAM = "lon";
+
     /**
      * Query parameter name for language.
      */
@@ -252,6 +260,55 @@ public final class OpenWeatherApi {
             .thenApply(this::handleResponse);
     }
 
+    /**
+     * Retrieves current weather data asynchronously for the specified coordinates.
+     *
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @param lang the language for weather descriptions; must not be null
+     * @param unit the measurement system for weather data; must not be null
+     * @return {@link CompletableFuture} that will be completed with the {@link WeatherResponse}
+     *         of the nearest station or completed exceptionally with an appropriate exception
+     * @throws ShutdownException if the API instance has been shut down
+     */
+    public CompletableFuture<WeatherResponse> weatherAsync(double latitude,
+                                                           double longitude,
+                                                           SupportedLanguage lang,
+                                                           Units unit) {
+        if (loggingEnabled) {
+            log.debug("OpenWeatherApi async call; args=[lat={}, lon={}, lang={}, units={}]",
+                latitude, longitude, lang, unit);
+        }
+        checkShutdown();
+
+        String location = LATITUDE_QUERY_PARAM + '=' + formatCoordinate(latitude) + '&'
+            + LONGITUDE_QUERY_PARAM + '=' + formatCoordinate(longitude);
+        Call call = newCall(location, lang, unit);
+        return FutureWrapper.wrap(call, loggingEnabled)
+            .thenApply(this::handleResponse);
+    }
+
+    /**
+     * Retrieves current weather data asynchronously for a cache key.
+     *
+     * <p>Keys of coordinate cells are requested for the center of the cell,
+     * other keys by city name.</p>
+     *
+     * @param key the cache key to load
+     * @return {@link CompletableFuture} that will be completed with the {@link WeatherResponse}
+     *         or completed exceptionally with an appropriate exception
+     * @throws ShutdownException if the API instance has been shut down
+     * @throws IllegalArgumentException if the key has the cell prefix but is not a valid cell key
+     * @see GeoHash
+     */
+    public CompletableFuture<WeatherResponse> weatherAsync(CacheKey key) {
+        if (GeoHash.isCellKey(key.city())) {
+            double[] center = GeoHash.cellCenter(key.city());
+            return weatherAsync(center[0], center[1], key.language(), key.units());
+        }
+        return weatherAsync(key.city(), key.language(), key.units());
+    }
+
     /**
      * Verifies that the API instance has not been shut down.
      *
@@ -275,8 +332,21 @@ public final class OpenWeatherApi {
      * @return configured {@link Call} ready for execution
      */
     private Call buildCall(String city, SupportedLanguage lang, Units unit) {
+        String encodedCity = URLEncoder.encode(city, StandardCharsets.UTF_8);
+        return newCall(CITY_QUERY_PARAM + '=' + encodedCity, lang, unit);
+    }
+
+    /**
+     * Builds an HTTP call for a location given as query parameters.
+     *
+     * @param location encoded query parameters selecting the location
+     * @param lang the language for descriptions
+     * @param unit the measurement system
+     * @return configured {@link Call} ready for execution
+     */
+    private Call newCall(String location, SupportedLanguage lang, Units unit) {
         Request request = new Request.Builder()
-            .url(BASE_URL + WEATHER_ENDPOINT + buildQuery(city, lang, unit))
+            .url(BASE_URL + WEATHER_ENDPOINT + buildQuery(location, lang, unit))
             .get()
             .build();
 
@@ -286,18 +356,17 @@ public final class OpenWeatherApi {
     /**
      * Constructs the query string for the API request.
      *
-     * @param city the target city name (will be URL-encoded)
+     * @param location encoded query parameters selecting the location
      * @param lang the language for descriptions
      * @param unit the measurement system
      * @return formatted query string including all parameters
      */
-    private String buildQuery(String city, SupportedLanguage lang, Units unit) {
+    private String buildQuery(String location, SupportedLanguage lang, Units unit) {
         StringBuilder query = new StringBuilder();
-        String encodedCity = URLEncoder.encode(city, StandardCharsets.UTF_8);
 
         query
             .append('?')
-            .append(CITY_QUERY_PARAM).append('=').append(encodedCity).append('&')
+            .append(location).append('&')
             .append(LANGUAGE_QUERY_PARAM).append('=').append(lang).append('&')
             .append(UNITS_QUERY_PARAM).append('=').append(unit).append('&')
             .append(APPID_QUERY_PARAM).append('=').append(apiKey);
@@ -305,6 +374,13 @@ public final class OpenWeatherApi {
         return query.toString();
     }
 
+    /**
+     * Formats a coordinate with fixed precision, independent of the default locale.
+     */
+    private static String formatCoordinate(double value) {
+        return String.format(Locale.ROOT, "%.6f", value);
+    }
+
     /**
      * Processes the HTTP response and converts it to a {@link WeatherResponse}.
      *
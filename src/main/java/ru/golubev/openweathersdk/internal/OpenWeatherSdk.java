@@ -1,6 +1,6 @@
 package ru.golubev.openweathersdk.internal;
 
-import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
 import java.time.Duration;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
@@ -13,8 +13,11 @@ import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.OkHttpClient;
+import ru.golubev.openweathersdk.CacheFootprint;
+import ru.golubev.openweathersdk.CacheKey;
 import ru.golubev.openweathersdk.SupportedLanguage;
 import ru.golubev.openweathersdk.Units;
+import ru.golubev.openweathersdk.WeatherCacheStats;
 import ru.golubev.openweathersdk.WeatherClient;
 import ru.golubev.openweathersdk.WeatherSdk;
 import ru.golubev.openweathersdk.WeatherSdkConfigurer;
@@ -38,7 +41,7 @@ import ru.golubev.openweathersdk.model.WeatherResponse;
  *   <li>Thread-safe client creation and access</li>
  *   <li>Graceful shutdown and resource cleanup</li>
  *   <li>Configurable caching strategies</li>
- *   <li>Support for both on-demand and polling modes</li>
+ *   <li>Support for on-demand, polling and refresh-ahead modes</li>
  * </ul>
  *
  * <p><b>Basic usage pattern:</b></p>
@@ -91,6 +94,11 @@ public final class OpenWeatherSdk implements WeatherSdk {
      */
     public static final Duration DEFAULT_CACHE_TTL = Duration.ofMinutes(15);
 
+    /**
+     * Number of threads running polling refreshes for all polling clients.
+     */
+    private static final int POLLING_TIMER_THREADS = 2;
+
     /**
      * Registry of created clients keyed by API key.
      * Provides thread-safe access to all active clients.
@@ -118,8 +126,22 @@ public final class OpenWeatherSdk implements WeatherSdk {
     /**
      * Shared cache instance for weather data across multiple clients.
      * Reduces memory footprint and improves data consistency.
+     * Keyed by {@link CacheKey}, so it is safe for clients with any language and units.
+     */
+    private ResponseCache sharedCache;
+
+    /**
+     * Timer running the polling cycles and refreshes of all polling clients.
+     * Created with the first polling client, so SDKs without polling start no threads.
      */
-    private Cache<String, WeatherResponse> sharedCache;
+    private TimingWheel pollingTimer;
+
+    /**
+     * Coordinator of the polling cycles of the shared cache.
+     * Created with the first polling client using the shared cache, so shared
+     * entries are refreshed once per cycle however many clients poll them.
+     */
+    private RefreshCoordinator sharedRefreshCoordinator;
 
     /**
      * Singleton holder implementing lazy initialization pattern.
@@ -224,7 +246,8 @@ public final class OpenWeatherSdk implements WeatherSdk {
      * Configures the shared cache for all subsequently created weather clients.
      *
      * <p>The shared cache reduces memory usage and improves data consistency
-     * when multiple clients access the same location data.</p>
+     * when multiple clients access the same location data. Entries are keyed by
+     * city, language and units, so clients with different settings can share it.</p>
      *
      * @param configurer consumer that customizes cache configuration
      * @return this SDK instance for method chaining
@@ -234,10 +257,17 @@ public final class OpenWeatherSdk implements WeatherSdk {
      * <pre>{@code
      * sdk.sharedCache(cfg -> cfg
      *     .ttl(Duration.ofMinutes(30))
+     *     .staleWhileRevalidate(Duration.ofMinutes(5))
      *     .maxSize(200));
      * }</pre>
      *
-     * <p><b>Restriction:</b> Shared cache cannot be used with {@link UpdateMode#POLLING} mode.</p>
+     * <p>A shared entry read within its staleness window is revalidated through the
+     * API of the client that read it, so each reload is billed to a client using the entry.</p>
+     *
+     * <p>Polling clients using the shared cache share one polling schedule, so each
+     * shared entry is refreshed by a single API call per cycle.</p>
+     *
+     * <p><b>Restriction:</b> Shared cache cannot be used with {@link UpdateMode#REFRESH_AHEAD} mode.</p>
      */
     @Override
     public OpenWeatherSdk sharedCache(Consumer<CacheConfigurer> configurer) {
@@ -265,7 +295,7 @@ public final class OpenWeatherSdk implements WeatherSdk {
      *
      * @return the shared cache instance
      */
-    private Cache<String, WeatherResponse> getSharedCacheOrDefault() {
+    private ResponseCache getSharedCacheOrDefault() {
         ensureNotShutdown();
         updateLock.lock();
         try {
@@ -281,6 +311,38 @@ public final class OpenWeatherSdk implements WeatherSdk {
         }
     }
 
+    /**
+     * Gets the timer shared by all polling clients, starting it on first use.
+     */
+    private TimingWheel getPollingTimer() {
+        updateLock.lock();
+        try {
+            if (pollingTimer == null) {
+                log.debug("OpenWeatherSdk starting polling timer.");
+                pollingTimer = new TimingWheel(
+                    Duration.ofMillis(TimingWheel.DEFAULT_TICK_MILLIS), POLLING_TIMER_THREADS, "openweather-polling");
+            }
+            return pollingTimer;
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the coordinator of the shared cache's polling cycles, creating it on first use.
+     */
+    private RefreshCoordinator getSharedRefreshCoordinator() {
+        updateLock.lock();
+        try {
+            if (sharedRefreshCoordinator == null) {
+                sharedRefreshCoordinator = new RefreshCoordinator(getSharedCacheOrDefault(), getPollingTimer());
+            }
+            return sharedRefreshCoordinator;
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
     /**
      * Creates a new weather client with the specified API key and configuration.
      *
@@ -354,22 +416,33 @@ public final class OpenWeatherSdk implements WeatherSdk {
      *
      * @param cfg the weather SDK configuration
      * @return configured weather client instance
-     * @throws IllegalArgumentException if shared cache is used with polling mode
+     * @throws IllegalArgumentException if shared cache is used with refresh-ahead mode
      */
     private WeatherClientImpl build(WeatherSdkConfigurer cfg) {
         ensureNotShutdown();
 
         log.debug("OpenWeatherSdk built with configurer {}", cfg);
 
-        if (cfg.sharedCache() && cfg.updateMode() == UpdateMode.POLLING) {
-            log.error("Cannot use shared cache with client in POLLING mode due to implementation.");
-            throw new IllegalArgumentException("Cannot use shared cache with client in POLLING mode due to implementation.");
+        if (cfg.sharedCache() && cfg.updateMode() == UpdateMode.REFRESH_AHEAD) {
+            log.error("Cannot use shared cache with client in {} mode due to implementation.", cfg.updateMode());
+            throw new IllegalArgumentException(
+                "Cannot use shared cache with client in " + cfg.updateMode() + " mode due to implementation.");
         }
 
-        // --- Cache setup ---
-        Cache<String, WeatherResponse> cache = cfg.sharedCache()
-            ? getSharedCacheOrDefault()
-            : CacheFactory.create(cfg.cacheConfigurer());
+        int geohashPrecision = cfg.cacheConfigurer().geohashPrecision();
+        if (geohashPrecision < 1 || geohashPrecision > GeoHash.MAX_PRECISION) {
+            throw new IllegalArgumentException("geohashPrecision must be between 1 and "
+                + GeoHash.MAX_PRECISION + ", got " + geohashPrecision);
+        }
+
+        if (cfg.pollingBudget() < 0) {
+            throw new IllegalArgumentException("pollingBudget must not be negative, got " + cfg.pollingBudget());
+        }
+
+        if (cfg.pollingConcurrency() <= 0) {
+            throw new IllegalArgumentException(
+                "pollingConcurrency must be positive, got " + cfg.pollingConcurrency());
+        }
 
         // --- HTTP client setup ---
         OkHttpClient httpClient = cfg.sharedClient()
@@ -384,16 +457,31 @@ public final class OpenWeatherSdk implements WeatherSdk {
             cfg.sharedClient()
         );
 
+        // --- Cache setup ---
+        AsyncCacheLoader<CacheKey, WeatherResponse> loader = (key, executor) ->
+            openWeatherApi.weatherAsync(key);
+
+        ResponseCache cache = cfg.sharedCache()
+            ? getSharedCacheOrDefault()
+            : CacheFactory.create(cfg.cacheConfigurer(), loader, cfg.updateMode());
+
         // --- Client type selection ---
         if (cfg.updateMode() == UpdateMode.POLLING) {
             return new PollingWeatherClientImpl(
                 cfg.loggingEnabled(),
                 cfg.language(),
                 cfg.units(),
+                geohashPrecision,
                 cfg.sharedCache(),
                 cache,
                 openWeatherApi,
-                cfg.pollingInterval()
+                cfg.pollingInterval(),
+                cfg.pollingBudget(),
+                cfg.pollingConcurrency(),
+                cfg.pollingListener(),
+                cfg.sharedCache()
+                    ? getSharedRefreshCoordinator()
+                    : new RefreshCoordinator(cache, getPollingTimer())
             );
         }
 
@@ -401,6 +489,7 @@ public final class OpenWeatherSdk implements WeatherSdk {
             cfg.loggingEnabled(),
             cfg.language(),
             cfg.units(),
+            geohashPrecision,
             cfg.sharedCache(),
             cache,
             openWeatherApi
@@ -421,12 +510,12 @@ public final class OpenWeatherSdk implements WeatherSdk {
     /**
      * Builds cache from configuration.
      */
-    private Cache<String, WeatherResponse> buildCache(CacheConfigurer configurer) {
+    private ResponseCache buildCache(CacheConfigurer configurer) {
         if (configurer == null) {
             log.error("configurer is null");
             throw new IllegalStateException("configurer is null");
         }
-        return CacheFactory.create(configurer);
+        return CacheFactory.createShared(configurer);
     }
 
     /**
@@ -471,6 +560,58 @@ public final class OpenWeatherSdk implements WeatherSdk {
         }
     }
 
+    /**
+     * Returns the estimated memory footprint of the shared cache.
+     *
+     * @return footprint of the shared cache, or {@link CacheFootprint#EMPTY} if it
+     *         has not been created yet
+     * @throws IllegalStateException if SDK is shut down
+     *
+     * <p><b>Example:</b></p>
+     * <pre>{@code
+     * CacheFootprint footprint = sdk.sharedCacheFootprint();
+     * long budget = footprint.averageEntryBytes() * expectedCities;
+     * }</pre>
+     */
+    @Override
+    public CacheFootprint sharedCacheFootprint() {
+        ensureNotShutdown();
+        updateLock.lock();
+        try {
+            return sharedCache != null ? sharedCache.footprint() : CacheFootprint.EMPTY;
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Returns statistics of the shared cache.
+     *
+     * @return statistics of the shared cache, or all zero counters if it has not
+     *         been created yet
+     * @throws IllegalStateException if SDK is shut down
+     *
+     * <p><b>Example:</b></p>
+     * <pre>{@code
+     * WeatherCacheStats stats = sdk.sharedCacheStats();
+     * if (stats.hitRate() < 0.8) {
+     *     log.warn("Shared cache hit rate is {}", stats.hitRate());
+     * }
+     * }</pre>
+     */
+    @Override
+    public WeatherCacheStats sharedCacheStats() {
+        ensureNotShutdown();
+        updateLock.lock();
+        try {
+            return sharedCache != null
+                ? sharedCache.stats()
+                : new WeatherCacheStats(0, 0, 0, 0, 0, 0, 0, CacheFootprint.EMPTY);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
     /**
      * Performs complete shutdown of the SDK and all associated resources.
      *
@@ -528,11 +669,18 @@ public final class OpenWeatherSdk implements WeatherSdk {
                 log.debug("OpenWeatherSdk clearing http client.");
             }
 
+            sharedRefreshCoordinator = null;
+            if (pollingTimer != null) {
+                pollingTimer.close();
+                pollingTimer = null;
+
+                log.debug("OpenWeatherSdk stopped polling timer.");
+            }
+
             if (sharedCache != null) {
                 log.debug("OpenWeatherSdk clearing shared cache.");
 
-                sharedCache.invalidateAll();
-                sharedCache.cleanUp();
+                sharedCache.close();
                 sharedCache = null;
 
                 log.debug("OpenWeatherSdk cleared shared cache.");
@@ -1,15 +1,12 @@
 package ru.golubev.openweathersdk.internal;
 
-import com.github.benmanes.caffeine.cache.Cache;
 import java.time.Duration;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import lombok.extern.slf4j.Slf4j;
+import ru.golubev.openweathersdk.PollingCycleReport;
 import ru.golubev.openweathersdk.WeatherSdkConfigurer.UpdateMode;
 import ru.golubev.openweathersdk.SupportedLanguage;
 import ru.golubev.openweathersdk.Units;
-import ru.golubev.openweathersdk.model.WeatherResponse;
 
 /**
  * Weather client implementation with automatic background polling for cached cities.
@@ -21,9 +18,20 @@ import ru.golubev.openweathersdk.model.WeatherResponse;
  * <p><b>Polling behavior:</b></p>
  * <ul>
  *   <li>Automatically starts polling after construction</li>
- *   <li>Polls all cities currently in the cache</li>
+ *   <li>Refreshes cities with change subscribers every cycle, ahead of other cities</li>
+ *   <li>Refreshes cached cities requested recently, most requested first</li>
+ *   <li>Spends at most the configured budget of API calls per cycle</li>
+ *   <li>Runs at most the configured number of refreshes at a time and skips
+ *       cities whose refresh from an earlier cycle has not finished</li>
+ *   <li>Backs off cities whose refreshes keep failing, exponentially up to a cap,
+ *       while healthy cities keep their cadence</li>
+ *   <li>Reports duration, successes and failures of every cycle to the polling listener</li>
+ *   <li>Leaves cities that are no longer requested to expire</li>
+ *   <li>Spreads refreshes over the interval, each city at its own jittered phase</li>
  *   <li>Uses configured polling interval</li>
  *   <li>Runs async API calls to avoid blocking</li>
+ *   <li>Shares one polling schedule with other polling clients of a shared cache,
+ *       so each shared city is refreshed by one API call per cycle</li>
  *   <li>Automatically stops polling on close()</li>
  * </ul>
  *
@@ -35,6 +43,7 @@ import ru.golubev.openweathersdk.model.WeatherResponse;
  * </ul>
  *
  * @see WeatherClientImpl
+ * @see RefreshCoordinator
  * @see UpdateMode#POLLING
  * @since 1.0
  */
@@ -47,9 +56,24 @@ public class PollingWeatherClientImpl extends WeatherClientImpl {
     private final Duration pollingInterval;
 
     /**
-     * Scheduled executor for managing polling tasks.
+     * Maximum number of API calls per polling cycle, or 0 for no limit.
      */
-    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final int pollingBudget;
+
+    /**
+     * Maximum number of refreshes running at the same time.
+     */
+    private final int pollingConcurrency;
+
+    /**
+     * Receives the report of every polling cycle, or null.
+     */
+    private final Consumer<PollingCycleReport> pollingListener;
+
+    /**
+     * Coordinator running the polling cycles of the client's cache.
+     */
+    private final RefreshCoordinator refreshCoordinator;
 
     /**
      * Constructs a polling weather client with specified configuration.
@@ -57,94 +81,74 @@ public class PollingWeatherClientImpl extends WeatherClientImpl {
      * @param loggingEnabled enables operation logging
      * @param language language for weather descriptions
      * @param units measurement units system
+     * @param geohashPrecision geohash precision of coordinate lookups
      * @param isCacheShared indicates if cache is shared with other clients
      * @param responseCache cache instance for weather data
      * @param weatherApi OpenWeather API client
      * @param pollingInterval interval between polling cycles
+     * @param pollingBudget maximum number of API calls per polling cycle, or 0 for no limit
+     * @param pollingConcurrency maximum number of refreshes running at the same time
+     * @param pollingListener receives the report of every polling cycle, or null
+     * @param refreshCoordinator coordinator of the polling cycles of {@code responseCache}
      */
     public PollingWeatherClientImpl(boolean loggingEnabled,
                                     SupportedLanguage language,
                                     Units units,
+                                    int geohashPrecision,
                                     boolean isCacheShared,
-                                    Cache<String, WeatherResponse> responseCache,
+                                    ResponseCache responseCache,
                                     OpenWeatherApi weatherApi,
-                                    Duration pollingInterval) {
-        super(loggingEnabled, language, units, isCacheShared, responseCache, weatherApi);
+                                    Duration pollingInterval,
+                                    int pollingBudget,
+                                    int pollingConcurrency,
+                                    Consumer<PollingCycleReport> pollingListener,
+                                    RefreshCoordinator refreshCoordinator) {
+        super(loggingEnabled, language, units, geohashPrecision, isCacheShared, responseCache, weatherApi);
         this.pollingInterval = pollingInterval;
+        this.pollingBudget = pollingBudget;
+        this.pollingConcurrency = pollingConcurrency;
+        this.pollingListener = pollingListener;
+        this.refreshCoordinator = refreshCoordinator;
         startPolling();
     }
 
     /**
      * Performs graceful shutdown of polling client.
      *
-     * <p>Stops polling scheduler and performs base client cleanup
+     * <p>Stops polling and performs base client cleanup
      * via {@link WeatherClientImpl#close()}.</p>
      */
     @Override
     public void close() {
-        super.close();
         stopPolling();
+        super.close();
     }
 
     /**
-     * Starts the background polling scheduler.
+     * Registers the client with the coordinator of its cache.
      *
-     * <p>Schedules the first polling task to run after the configured interval.
-     * Subsequent polls are scheduled by the poll() method itself.</p>
+     * <p>The first cycle runs after the configured interval, or with the cycles
+     * already running for other clients of a shared cache.</p>
      */
     private void startPolling() {
         if (loggingEnabled) {
             log.info("PollingWeatherClientImpl start polling with pollingInterval = {}", pollingInterval);
         }
-        scheduler.schedule(this::poll, pollingInterval.toSeconds(), TimeUnit.SECONDS);
+        refreshCoordinator.register(this, weatherApi()::weatherAsync,
+            pollingInterval, pollingBudget, pollingConcurrency, pollingListener, loggingEnabled);
     }
 
     /**
-     * Executes a single polling cycle for all cached cities.
-     *
-     * <p><b>Polling process:</b></p>
-     * <ol>
-     *   <li>Retrieves all cities currently in cache</li>
-     *   <li>Initiates async API call for each city</li>
-     *   <li>Updates cache with fresh responses</li>
-     *   <li>Schedules next polling cycle</li>
-     * </ol>
+     * Stops background polling.
      *
-     * <p><b>Note:</b> Uses async API calls to avoid blocking the polling thread
-     * and allow parallel data refresh for multiple cities.</p>
-     */
-    private void poll() {
-        if (loggingEnabled) {
-            log.debug("PollingWeatherClientImpl execute poll.");
-        }
-
-        getCachedCities().forEach(city -> {
-            if  (loggingEnabled) {
-                log.debug("PollingWeatherClientImpl start polling for city = {}", city);
-            }
-
-            getWeatherAsync(city).whenComplete((weatherResponse, throwable) -> {
-                if (weatherResponse != null && loggingEnabled) {
-                    log.debug("PollingWeatherClientImpl finished polling city = {}", city);
-                }
-            });
-        });
-
-        // Schedule next polling cycle
-        scheduler.schedule(this::poll, pollingInterval.toSeconds(), TimeUnit.SECONDS);
-    }
-
-    /**
-     * Stops the background polling scheduler.
-     *
-     * <p>Initiates graceful shutdown of the scheduler, allowing running
-     * tasks to complete but preventing new tasks from starting.</p>
+     * <p>Unregisters the client from the coordinator. The coordinator stops its
+     * cycles once no client is registered; otherwise it keeps refreshing the
+     * cache for the remaining clients.</p>
      */
     private void stopPolling() {
         if (loggingEnabled) {
             log.info("PollingWeatherClientImpl stop polling.");
         }
-
-        scheduler.shutdown();
+        refreshCoordinator.unregister(this);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,610 @@
+package ru.golubev.openweathersdk.internal;
+
+import java.time.Duration;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.PollingCycleReport;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+
+/**
+ * Owner of the polling refreshes of one response cache.
+ *
+ * <p>Every polling client registers with the coordinator of its cache instead of
+ * polling on its own. A client with a private cache has a coordinator of its own;
+ * all clients polling the SDK shared cache register with one coordinator, so each
+ * shared key is refreshed once per cycle for all of them, through one upstream
+ * call, instead of once per client.</p>
+ *
+ * <p>Every reload is sent through the API of one registered client, so polling is
+ * paid for only by the clients that poll. The reloads of a cycle are dealt to the
+ * clients by smooth weighted round-robin with their budgets as weights, and no
+ * client pays for more reloads per cycle than its budget. Reloads billed to a
+ * client that unregisters during the cycle go to clients with budget left, or are
+ * skipped.</p>
+ *
+ * <p><b>Polling cycle:</b></p>
+ * <ol>
+ *   <li>Runs every shortest interval of the registered clients</li>
+ *   <li>Selects keys with change subscribers first, then cached keys looked up since
+ *       the previous cycles, most looked up first, up to the combined budget of the clients</li>
+ *   <li>Halves all lookup counts, so keys that are no longer looked up become cold and expire</li>
+ *   <li>Schedules a reload of each selected key at its jittered phase within the interval</li>
+ *   <li>Queues due reloads while the highest concurrency limit of the clients is reached</li>
+ *   <li>Skips a reload if the previous reload of the key is still queued or running</li>
+ *   <li>Backs off keys whose reloads keep failing, see {@link #MAX_BACKOFF_EXPONENT}</li>
+ *   <li>Reports duration, successes, failures and skips once every reload has finished</li>
+ * </ol>
+ *
+ * <p>The queue holds each key at most once, so a slow upstream delays polling
+ * instead of piling up requests, and overlapping cycles cannot multiply the
+ * pending calls.</p>
+ *
+ * <p>Cycles run on the SDK-wide {@link TimingWheel} while at least one client is registered.</p>
+ *
+ * @see PollingWeatherClientImpl
+ * @see ResponseCache#refresh
+ * @since 1.0
+ */
+@Slf4j
+final class RefreshCoordinator {
+
+    /**
+     * Largest jitter of a refresh, as a fraction of the average spacing between refreshes.
+     */
+    private static final double JITTER_RATIO = 0.25;
+
+    /**
+     * Cap of the exponential backoff of failing keys.
+     *
+     * <p>After its n-th failure in a row a key sits out 2<sup>n</sup> - 1 cycles,
+     * but never more than 2<sup>{@value}</sup> - 1, so a broken key stops using
+     * upstream calls and refresh slots and is still retried now and then. The
+     * first success resets it to the normal cadence.</p>
+     */
+    private static final int MAX_BACKOFF_EXPONENT = 5;
+
+    /**
+     * Priority of keys with change subscribers, above any lookup count.
+     */
+    private static final int SUBSCRIBED_PRIORITY = FrequencySketch.MAX_FREQUENCY + 1;
+
+    /**
+     * Runs the delayed tasks of a coordinator.
+     */
+    @FunctionalInterface
+    interface Scheduler {
+
+        /**
+         * Schedules a task to run once after the delay.
+         *
+         * @param task the task
+         * @param delay time until the task runs
+         * @param unit unit of the delay
+         * @return handle to cancel the task
+         * @see TimingWheel#schedule
+         */
+        TimingWheel.Timeout schedule(Runnable task, long delay, TimeUnit unit);
+    }
+
+    /**
+     * Polling settings of one registered client.
+     */
+    @RequiredArgsConstructor
+    static final class Registration {
+        private final Object owner;
+        private final Function<CacheKey, CompletableFuture<WeatherResponse>> loader;
+        private final long intervalMillis;
+        private final int budget;
+        private final int concurrency;
+        private final Consumer<PollingCycleReport> listener;
+        private final boolean loggingEnabled;
+    }
+
+    /**
+     * Progress of one polling cycle.
+     */
+    @RequiredArgsConstructor
+    private static final class Cycle {
+        private final long number;
+        private final int scheduled;
+        private final int backedOff;
+        private final List<Consumer<PollingCycleReport>> listeners;
+        private final boolean loggingEnabled;
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger finished = new AtomicInteger();
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        /**
+         * Start of the first reload of the cycle, set once {@link #started}.
+         */
+        private volatile long firstStartNanos;
+
+        /**
+         * Reloads charged to each client by owner, so the reloads of a client that
+         * unregisters only go to clients with budget left.
+         */
+        private final Map<Object, AtomicInteger> charges = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Consecutive failures of a key and the first cycle that may reload it again.
+     */
+    @RequiredArgsConstructor
+    private static final class Backoff {
+        private final int failures;
+        private final long retryCycle;
+    }
+
+    /**
+     * A due reload waiting for a free slot.
+     */
+    @RequiredArgsConstructor
+    private static final class Refresh {
+        private final CacheKey key;
+        private final Registration payer;
+        private final Cycle cycle;
+    }
+
+    private final ResponseCache cache;
+    private final Scheduler timer;
+
+    /**
+     * Random rotation of all key phases, so processes polling the same cities do
+     * not refresh them at the same moments.
+     */
+    private final double phaseOffset = ThreadLocalRandom.current().nextDouble();
+
+    private final Map<Object, Registration> registrations = new ConcurrentHashMap<>();
+
+    /**
+     * Keys whose reload is queued or running.
+     */
+    private final Set<CacheKey> inFlight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Backoff of keys whose last reload failed.
+     */
+    private final Map<CacheKey, Backoff> backoffs = new ConcurrentHashMap<>();
+
+    /**
+     * Due reloads waiting for a free slot, each key at most once.
+     */
+    private final Queue<Refresh> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of running reloads.
+     */
+    private final AtomicInteger running = new AtomicInteger();
+
+    /**
+     * Maximum number of running reloads, updated every cycle.
+     */
+    private volatile int concurrency = 1;
+
+    // Guarded by this.
+    private TimingWheel.Timeout nextCycle;
+    private long generation;
+    private long cycleNumber;
+
+    /**
+     * Creates a coordinator; cycles start with the first registration.
+     *
+     * @param cache the polled cache
+     * @param timer the timer running cycles and refreshes
+     */
+    RefreshCoordinator(ResponseCache cache, TimingWheel timer) {
+        this(cache, timer::schedule);
+    }
+
+    /**
+     * Creates a coordinator running its cycles and refreshes on a scheduler.
+     *
+     * @param cache the polled cache
+     * @param timer the scheduler running cycles and refreshes
+     */
+    RefreshCoordinator(ResponseCache cache, Scheduler timer) {
+        this.cache = cache;
+        this.timer = timer;
+    }
+
+    /**
+     * Registers a polling client, starting the cycles if it is the first one.
+     *
+     * @param owner the client
+     * @param loader starts an upstream call for a key through the client's API
+     * @param interval the client's polling interval
+     * @param budget the client's maximum number of API calls per cycle, or 0 for no limit
+     * @param concurrency the client's maximum number of running reloads
+     * @param listener receives the cycle reports, or null
+     * @param loggingEnabled enables debug logging of the cycles
+     */
+    synchronized void register(Object owner,
+                               Function<CacheKey, CompletableFuture<WeatherResponse>> loader,
+                               Duration interval,
+                               int budget,
+                               int concurrency,
+                               Consumer<PollingCycleReport> listener,
+                               boolean loggingEnabled) {
+        boolean first = registrations.isEmpty();
+        registrations.put(owner, new Registration(
+            owner, loader, Math.max(1, interval.toMillis()), budget, concurrency, listener, loggingEnabled));
+        this.concurrency = concurrency();
+        if (first) {
+            long cycle = ++generation;
+            nextCycle = timer.schedule(() -> runCycle(cycle), intervalMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Unregisters a polling client, stopping the cycles if it was the last one.
+     * Refreshes that are still scheduled or queued are dropped when they come due
+     * or reach a free slot.
+     *
+     * @param owner the client
+     */
+    synchronized void unregister(Object owner) {
+        registrations.remove(owner);
+        if (registrations.isEmpty() && nextCycle != null) {
+            nextCycle.cancel();
+            nextCycle = null;
+            generation++;
+        }
+    }
+
+    /**
+     * Executes one polling cycle and schedules the next.
+     *
+     * @param cycle generation the cycle was scheduled in; stale cycles do nothing
+     */
+    private void runCycle(long cycle) {
+        long number;
+        long intervalMillis;
+        int budget;
+        List<Registration> payers;
+        List<Consumer<PollingCycleReport>> listeners;
+        boolean loggingEnabled;
+        synchronized (this) {
+            if (cycle != generation || registrations.isEmpty()) {
+                return;
+            }
+            number = ++cycleNumber;
+            intervalMillis = intervalMillis();
+            budget = budget();
+            concurrency = concurrency();
+            payers = new ArrayList<>(registrations.values());
+            listeners = registrations.values().stream()
+                .map(r -> r.listener)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+            loggingEnabled = loggingEnabled();
+            nextCycle = timer.schedule(() -> runCycle(cycle), intervalMillis, TimeUnit.MILLISECONDS);
+        }
+
+        Set<CacheKey> cachedKeys = cache.keys();
+        Set<CacheKey> subscribedKeys = cache.subscribedKeys();
+        Set<CacheKey> candidates = cachedKeys;
+        if (!subscribedKeys.isEmpty()) {
+            // Subscribed keys are polled even after they were evicted
+            candidates = new HashSet<>(cachedKeys);
+            candidates.addAll(subscribedKeys);
+        }
+        // Forget the backoff of keys that were evicted or found missing upstream
+        backoffs.keySet().retainAll(candidates);
+        List<Map.Entry<CacheKey, Integer>> hot = new ArrayList<>();
+        int backedOff = 0;
+        for (CacheKey key : candidates) {
+            int frequency = subscribedKeys.contains(key) ? SUBSCRIBED_PRIORITY : cache.frequency(key);
+            if (frequency == 0) {
+                continue;
+            }
+            Backoff backoff = backoffs.get(key);
+            if (backoff != null && backoff.retryCycle > number) {
+                backedOff++;
+                continue;
+            }
+            hot.add(new SimpleImmutableEntry<>(key, frequency));
+        }
+        hot.sort(Map.Entry.<CacheKey, Integer>comparingByValue().reversed());
+        int count = budget > 0 ? Math.min(budget, hot.size()) : hot.size();
+        cache.ageFrequencies();
+
+        if (loggingEnabled) {
+            log.debug("RefreshCoordinator refreshing {} of {} cached cities for {} clients, {} backing off.",
+                count, cachedKeys.size(), registrations.size(), backedOff);
+        }
+
+        Cycle progress = new Cycle(number, count, backedOff, listeners, loggingEnabled);
+        if (count == 0) {
+            report(progress);
+            return;
+        }
+        List<Registration> bill = bill(payers, count);
+        for (int i = 0; i < count; i++) {
+            CacheKey key = hot.get(i).getKey();
+            Registration payer = bill.get(i);
+            progress.charges.computeIfAbsent(payer.owner, owner -> new AtomicInteger()).incrementAndGet();
+            timer.schedule(() -> submit(key, payer, progress), phaseDelay(key, intervalMillis, count),
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Assigns the reloads of a cycle to the clients whose API sends them.
+     *
+     * <p>Smooth weighted round-robin with the budgets as weights interleaves the
+     * clients in proportion to their budgets. A client is skipped once it has paid
+     * for its budget; clients without a budget weigh as much as the largest budget
+     * and take the reloads the others cannot pay for.</p>
+     *
+     * @param payers the registered clients
+     * @param count number of reloads in the cycle, at most the combined budget
+     * @return the paying client of each reload, in reload order
+     */
+    static List<Registration> bill(List<Registration> payers, int count) {
+        int size = payers.size();
+        int unlimitedWeight = Math.max(1, payers.stream().mapToInt(r -> r.budget).max().orElse(1));
+        long[] current = new long[size];
+        int[] paid = new int[size];
+        List<Registration> bill = new ArrayList<>(count);
+        for (int n = 0; n < count; n++) {
+            long total = 0;
+            int best = -1;
+            for (int i = 0; i < size; i++) {
+                Registration payer = payers.get(i);
+                if (payer.budget > 0 && paid[i] >= payer.budget) {
+                    continue;
+                }
+                int weight = payer.budget > 0 ? payer.budget : unlimitedWeight;
+                current[i] += weight;
+                total += weight;
+                if (best < 0 || current[i] > current[best]) {
+                    best = i;
+                }
+            }
+            current[best] -= total;
+            paid[best]++;
+            bill.add(payers.get(best));
+        }
+        return bill;
+    }
+
+    /**
+     * Queues a due reload unless the previous reload of the key is still queued or running.
+     */
+    private void submit(CacheKey key, Registration payer, Cycle cycle) {
+        if (registrations.isEmpty() || !inFlight.add(key)) {
+            if (cycle.loggingEnabled) {
+                log.debug("RefreshCoordinator skipped polling city = {}", key.city());
+            }
+            finish(cycle, cycle.skipped);
+            return;
+        }
+        queue.add(new Refresh(key, payer, cycle));
+        drain();
+    }
+
+    /**
+     * Starts queued reloads while fewer than {@link #concurrency} are running.
+     */
+    private void drain() {
+        while (!queue.isEmpty()) {
+            int active = running.get();
+            if (active >= concurrency) {
+                return;
+            }
+            if (!running.compareAndSet(active, active + 1)) {
+                continue;
+            }
+            Refresh refresh = queue.poll();
+            if (refresh == null) {
+                running.decrementAndGet();
+                continue;
+            }
+            start(refresh);
+        }
+    }
+
+    /**
+     * Reloads one key from upstream in a slot reserved by {@link #drain()}.
+     */
+    private void start(Refresh refresh) {
+        CacheKey key = refresh.key;
+        Cycle cycle = refresh.cycle;
+        Registration payer = payer(refresh.payer, cycle);
+        if (payer == null) {
+            release(key);
+            finish(cycle, cycle.skipped);
+            return;
+        }
+        if (cycle.loggingEnabled) {
+            log.debug("RefreshCoordinator start polling for city = {}", key.city());
+        }
+        if (cycle.started.compareAndSet(false, true)) {
+            cycle.firstStartNanos = System.nanoTime();
+        }
+
+        try {
+            cache.refresh(key, payer.loader).whenComplete((weatherResponse, throwable) -> {
+                release(key);
+                if (throwable == null) {
+                    backoffs.remove(key);
+                    if (cycle.loggingEnabled) {
+                        log.debug("RefreshCoordinator finished polling city = {}", key.city());
+                    }
+                } else {
+                    backOff(key, cycle);
+                }
+                finish(cycle, throwable == null ? cycle.succeeded : cycle.failed);
+                drain();
+            });
+        } catch (RuntimeException e) {
+            release(key);
+            log.warn("RefreshCoordinator failed to start polling city = {}", key.city(), e);
+            backOff(key, cycle);
+            finish(cycle, cycle.failed);
+            drain();
+        }
+    }
+
+    /**
+     * Records a failed reload, doubling the number of cycles the key sits out.
+     */
+    private void backOff(CacheKey key, Cycle cycle) {
+        Backoff backoff = backoffs.compute(key, (k, previous) -> {
+            int failures = previous == null ? 1 : previous.failures + 1;
+            return new Backoff(failures, cycle.number + (1L << Math.min(failures, MAX_BACKOFF_EXPONENT)));
+        });
+        if (cycle.loggingEnabled) {
+            log.debug("RefreshCoordinator backing off city = {} after {} failures until cycle {}",
+                key.city(), backoff.failures, backoff.retryCycle);
+        }
+    }
+
+    /**
+     * Returns the client paying for a reload, or another registered client with
+     * budget left in the cycle if the billed one has unregistered since the cycle
+     * started.
+     *
+     * @return the paying client, or null if no registered client has budget left
+     */
+    private Registration payer(Registration billed, Cycle cycle) {
+        if (registrations.get(billed.owner) == billed) {
+            return billed;
+        }
+        for (Registration registration : registrations.values()) {
+            AtomicInteger charged = cycle.charges.computeIfAbsent(registration.owner, owner -> new AtomicInteger());
+            if (registration.budget == 0) {
+                charged.incrementAndGet();
+                return registration;
+            }
+            for (int paid = charged.get(); paid < registration.budget; paid = charged.get()) {
+                if (charged.compareAndSet(paid, paid + 1)) {
+                    return registration;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void release(CacheKey key) {
+        inFlight.remove(key);
+        running.decrementAndGet();
+    }
+
+    /**
+     * Counts a finished reload and reports the cycle after its last one.
+     */
+    private void finish(Cycle cycle, AtomicInteger outcome) {
+        outcome.incrementAndGet();
+        if (cycle.finished.incrementAndGet() == cycle.scheduled) {
+            report(cycle);
+        }
+    }
+
+    /**
+     * Publishes the outcome of a cycle whose reloads have all finished.
+     *
+     * <p>Reloads are spread over the whole interval, so the duration is measured
+     * from the start of the first reload to the end of the last one rather than
+     * from the start of the cycle.</p>
+     */
+    private void report(Cycle cycle) {
+        Duration duration = cycle.started.get()
+            ? Duration.ofNanos(System.nanoTime() - cycle.firstStartNanos)
+            : Duration.ZERO;
+        PollingCycleReport report = new PollingCycleReport(
+            duration,
+            cycle.scheduled,
+            cycle.succeeded.get(),
+            cycle.failed.get(),
+            cycle.skipped.get(),
+            cycle.backedOff);
+        if (cycle.loggingEnabled) {
+            log.debug("RefreshCoordinator finished polling cycle: {}", report);
+        }
+        for (Consumer<PollingCycleReport> listener : cycle.listeners) {
+            try {
+                listener.accept(report);
+            } catch (RuntimeException e) {
+                log.warn("RefreshCoordinator polling listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Computes when a key is refreshed within the polling cycle.
+     *
+     * <p>The phase is derived from the key's hash, so a key keeps its place in the
+     * cycle and is refreshed once per interval, and many keys spread evenly over
+     * the interval. Random jitter of up to {@value #JITTER_RATIO} of the average
+     * spacing between refreshes keeps keys with close phases apart.</p>
+     *
+     * @param key the key to refresh
+     * @param intervalMillis length of the polling cycle
+     * @param count number of keys refreshed in this cycle
+     * @return delay from the start of the cycle, from 0 to the interval
+     */
+    private long phaseDelay(CacheKey key, long intervalMillis, int count) {
+        double hashPhase = ((key.hashCode() * 0x9E37_79B9_7F4A_7C15L) >>> 11) * 0x1.0p-53;
+        double phase = (hashPhase + phaseOffset) % 1.0;
+        double jitter = (ThreadLocalRandom.current().nextDouble() * 2 - 1) * JITTER_RATIO * intervalMillis / count;
+        return Math.floorMod((long) (phase * intervalMillis + jitter), intervalMillis);
+    }
+
+    /**
+     * Returns the shortest interval of the registered clients. Must be called with the lock held.
+     */
+    private long intervalMillis() {
+        return registrations.values().stream().mapToLong(r -> r.intervalMillis).min().orElse(1);
+    }
+
+    /**
+     * Returns the combined budget of the registered clients, or 0 if any of them
+     * is unlimited. Must be called with the lock held.
+     */
+    private int budget() {
+        long total = 0;
+        for (Registration registration : registrations.values()) {
+            if (registration.budget == 0) {
+                return 0;
+            }
+            total += registration.budget;
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the highest concurrency limit of the registered clients. Must be called with the lock held.
+     */
+    private int concurrency() {
+        return registrations.values().stream().mapToInt(r -> r.concurrency).max().orElse(1);
+    }
+
+    /**
+     * Checks whether any registered client enabled logging. Must be called with the lock held.
+     */
+    private boolean loggingEnabled() {
+        return registrations.values().stream().anyMatch(r -> r.loggingEnabled);
+    }
+}
@@ -0,0 +1,382 @@
+package ru.golubev.openweathersdk.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+
+/**
+ * Remote cache tier shared by several processes through a Redis-compatible server.
+ *
+ * <p>Consulted on a local miss before the API is called, so a response loaded by
+ * one node is reused by all others. Responses loaded from the API are written
+ * back without waiting for the server. The tier is an optimization only: a slow,
+ * failing or unreachable server is treated as a miss.</p>
+ *
+ * <p><b>Protocol use:</b></p>
+ * <ul>
+ *   <li>One connection, opened lazily and reopened after failures at most once per second</li>
+ *   <li>Lookups queued at the same time are sent as a single {@code MGET}</li>
+ *   <li>Writes are {@code SET key value PX ttl} commands pipelined with lookups</li>
+ *   <li>Replies are read by a separate thread, so batches do not wait for each other</li>
+ *   <li>Values are a format version byte, the load time in epoch milliseconds and
+ *       the {@link WeatherResponseCodec} encoding</li>
+ * </ul>
+ *
+ * <p>A response read from the server expires locally when its local lifetime,
+ * counted from when it was loaded from the API, runs out. Its age on the server
+ * is not added to the local lifetime. Load times come from the clocks of the
+ * writing processes, so they should be roughly synchronized.</p>
+ *
+ * <p>Lookups complete on the common fork-join pool, never on the I/O threads.</p>
+ *
+ * @see ResponseCache
+ * @since 1.0
+ */
+@Slf4j
+final class RemoteCacheTier implements AutoCloseable {
+
+    private static final byte FORMAT_VERSION = 2;
+    private static final int MAX_BATCH = 256;
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private static final byte[] MGET = Resp.ascii("MGET");
+    private static final byte[] SET = Resp.ascii("SET");
+    private static final byte[] PX = Resp.ascii("PX");
+
+    /**
+     * Response read from the server.
+     */
+    @Value
+    static class Entry {
+
+        WeatherResponse value;
+
+        /**
+         * Local expiration time in epoch milliseconds.
+         */
+        long expiresAt;
+    }
+
+    /**
+     * Queued lookup or write.
+     */
+    @RequiredArgsConstructor
+    private static final class Command {
+        private final byte[] key;
+        private final byte[] value;
+        private final CompletableFuture<Entry> lookup;
+    }
+
+    /**
+     * Open connection with the reply handlers of its commands in sending order.
+     */
+    private final class Connection {
+        private final Socket socket;
+        private final OutputStream out;
+        private final BlockingQueue<Consumer<Object>> awaiting = new LinkedBlockingQueue<>();
+        private volatile boolean broken;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+        }
+
+        void readReplies() {
+            try (InputStream in = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE)) {
+                while (!broken) {
+                    Object reply = Resp.read(in);
+                    Consumer<Object> handler = awaiting.poll();
+                    if (handler != null) {
+                        handler.accept(reply);
+                    }
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Closes the connection and answers all outstanding lookups as misses.
+         */
+        void fail(IOException cause) {
+            if (!broken && !closed) {
+                log.warn("Remote cache connection to {} failed", address, cause);
+            }
+            broken = true;
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // best effort
+            }
+            Consumer<Object> handler;
+            while ((handler = awaiting.poll()) != null) {
+                handler.accept(null);
+            }
+        }
+    }
+
+    private final InetSocketAddress address;
+    private final String keyPrefix;
+    private final long ttlMillis;
+    private final long lifetimeMillis;
+    private final long timeoutMillis;
+    private final Executor executor = ForkJoinPool.commonPool();
+    private final BlockingQueue<Command> outbox = new LinkedBlockingQueue<>();
+    private final Thread writer;
+
+    private volatile boolean closed;
+
+    // Owned by the writer thread.
+    private Connection connection;
+    private long nextConnectAttempt;
+
+    /**
+     * Creates the tier and starts its writer thread. The connection is opened on first use.
+     *
+     * @param address the server address
+     * @param keyPrefix prefix of all keys written by the tier
+     * @param ttl lifetime of written entries on the server
+     * @param lifetime lifetime of a response in the local cache, counted from its load
+     * @param timeout time after which a pending lookup counts as a miss
+     */
+    RemoteCacheTier(InetSocketAddress address, String keyPrefix, Duration ttl, Duration lifetime, Duration timeout) {
+        this.address = address;
+        this.keyPrefix = keyPrefix;
+        this.ttlMillis = ttl.toMillis();
+        this.lifetimeMillis = lifetime.toMillis();
+        this.timeoutMillis = timeout.toMillis();
+        this.writer = new Thread(this::runWriter, "openweather-remote-cache-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Looks up the response for the key.
+     *
+     * @param key the cache key
+     * @return future completed with the stored response and its local expiration
+     *         time, or with null on a miss, a timeout or a failure
+     */
+    CompletableFuture<Entry> get(CacheKey key) {
+        CompletableFuture<Entry> lookup = new CompletableFuture<>();
+        if (closed) {
+            lookup.complete(null);
+            return lookup;
+        }
+        outbox.add(new Command(encodeKey(key), null, lookup));
+        return lookup.completeOnTimeout(null, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a write of a response just loaded from the API without waiting for the server.
+     *
+     * @param key the cache key
+     * @param value the response
+     */
+    void put(CacheKey key, WeatherResponse value) {
+        if (closed) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(System.currentTimeMillis());
+            WeatherResponseCodec.writeResponse(out, value);
+            outbox.add(new Command(encodeKey(key), bytes.toByteArray(), null));
+        } catch (IOException e) {
+            log.warn("Failed to encode remote cache value for {}", key, e);
+        }
+    }
+
+    /**
+     * Stops the writer and closes the connection. Queued writes are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        writer.interrupt();
+    }
+
+    private void runWriter() {
+        List<Command> batch = new ArrayList<>();
+        try {
+            while (!closed) {
+                batch.add(outbox.take());
+                outbox.drainTo(batch, MAX_BATCH - 1);
+                send(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (connection != null) {
+                connection.fail(null);
+            }
+            Command command;
+            while ((command = outbox.poll()) != null) {
+                if (command.lookup != null) {
+                    command.lookup.complete(null);
+                }
+            }
+            for (Command pending : batch) {
+                if (pending.lookup != null) {
+                    pending.lookup.complete(null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the lookups of the batch as one {@code MGET} followed by its writes.
+     */
+    private void send(List<Command> batch) {
+        List<Command> lookups = new ArrayList<>();
+        List<Command> writes = new ArrayList<>();
+        for (Command command : batch) {
+            if (command.lookup == null) {
+                writes.add(command);
+            } else if (!command.lookup.isDone()) {
+                lookups.add(command);
+            }
+        }
+
+        Connection current = connect();
+        if (current == null) {
+            completeAsMisses(lookups);
+            return;
+        }
+
+        try {
+            if (!lookups.isEmpty()) {
+                List<byte[]> args = new ArrayList<>(lookups.size() + 1);
+                args.add(MGET);
+                lookups.forEach(command -> args.add(command.key));
+                current.awaiting.add(reply -> completeLookups(lookups, reply));
+                Resp.writeCommand(current.out, args);
+            }
+            byte[] ttl = Resp.ascii(Long.toString(ttlMillis));
+            for (Command write : writes) {
+                current.awaiting.add(reply -> {
+                    if (reply instanceof Resp.ErrorReply) {
+                        log.debug("Remote cache rejected write: {}", ((Resp.ErrorReply) reply).getMessage());
+                    }
+                });
+                Resp.writeCommand(current.out, Arrays.asList(SET, write.key, write.value, PX, ttl));
+            }
+            current.out.flush();
+        } catch (IOException e) {
+            current.fail(e);
+        }
+    }
+
+    /**
+     * Returns the open connection, opening one if allowed.
+     *
+     * @return the connection, or null if the server cannot be reached right now
+     */
+    private Connection connect() {
+        if (connection != null && !connection.broken) {
+            return connection;
+        }
+        long now = System.currentTimeMillis();
+        if (now < nextConnectAttempt) {
+            return null;
+        }
+        nextConnectAttempt = now + RECONNECT_DELAY_MILLIS;
+
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(address, (int) Math.max(timeoutMillis, 1));
+            connection = new Connection(socket);
+        } catch (IOException e) {
+            log.warn("Failed to connect to remote cache at {}", address, e);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // best effort
+            }
+            return null;
+        }
+
+        Thread reader = new Thread(connection::readReplies, "openweather-remote-cache-reader");
+        reader.setDaemon(true);
+        reader.start();
+        return connection;
+    }
+
+    /**
+     * Completes the lookups of one {@code MGET} from its reply on the executor.
+     *
+     * @param lookups the lookups in request order
+     * @param reply the array reply, or null if the connection failed
+     */
+    private void completeLookups(List<Command> lookups, Object reply) {
+        if (!(reply instanceof List) || ((List<?>) reply).size() != lookups.size()) {
+            if (reply instanceof Resp.ErrorReply) {
+                log.debug("Remote cache rejected lookup: {}", ((Resp.ErrorReply) reply).getMessage());
+            }
+            completeAsMisses(lookups);
+            return;
+        }
+        List<?> values = (List<?>) reply;
+        executor.execute(() -> {
+            for (int i = 0; i < lookups.size(); i++) {
+                Object value = values.get(i);
+                lookups.get(i).lookup.complete(value instanceof byte[] ? decode((byte[]) value) : null);
+            }
+        });
+    }
+
+    private void completeAsMisses(List<Command> lookups) {
+        if (!lookups.isEmpty()) {
+            executor.execute(() -> lookups.forEach(command -> command.lookup.complete(null)));
+        }
+    }
+
+    private Entry decode(byte[] value) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(value));
+            if (in.readUnsignedByte() != FORMAT_VERSION) {
+                return null;
+            }
+            long loadedAt = in.readLong();
+            return new Entry(WeatherResponseCodec.readResponse(in), loadedAt + lifetimeMillis);
+        } catch (IOException e) {
+            log.debug("Failed to decode remote cache value", e);
+            return null;
+        }
+    }
+
+    private byte[] encodeKey(CacheKey key) {
+        return (keyPrefix + key.language().name() + ':' + key.units().name() + ':' + key.city())
+            .getBytes(StandardCharsets.UTF_8);
+    }
+}
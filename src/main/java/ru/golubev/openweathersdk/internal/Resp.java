@@ -0,0 +1,222 @@
+package ru.golubev.openweathersdk.internal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Value;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Encoder and decoder of the Redis serialization protocol (RESP2).
+ *
+ * <p>Used by {@link RemoteCacheTier} and by the in-process test server. Commands
+ * are arrays of bulk strings; replies are decoded to plain Java values.</p>
+ *
+ * <p><b>Reply mapping:</b></p>
+ * <ul>
+ *   <li>Simple string - {@link String}</li>
+ *   <li>Error - {@link ErrorReply}</li>
+ *   <li>Integer - {@link Long}</li>
+ *   <li>Bulk string - {@code byte[]}, or null for a nil bulk</li>
+ *   <li>Array - {@link List} of decoded elements, or null for a nil array</li>
+ * </ul>
+ *
+ * @see <a href="https://redis.io/docs/reference/protocol-spec/">RESP specification</a>
+ * @since 1.0
+ */
+@UtilityClass
+class Resp {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    /**
+     * Error reply.
+     */
+    @Value
+    static class ErrorReply {
+        String message;
+    }
+
+    /**
+     * Writes a command as an array of bulk strings without flushing.
+     *
+     * @param out the output to write to
+     * @param args command name and arguments
+     * @throws IOException if writing fails
+     */
+    void writeCommand(OutputStream out, List<byte[]> args) throws IOException {
+        writeHeader(out, '*', args.size());
+        for (byte[] arg : args) {
+            writeBulk(out, arg);
+        }
+    }
+
+    /**
+     * Writes a bulk string reply, or a nil bulk for null.
+     *
+     * @param out the output to write to
+     * @param value the bytes to write
+     * @throws IOException if writing fails
+     */
+    void writeBulk(OutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            writeHeader(out, '$', -1);
+            return;
+        }
+        writeHeader(out, '$', value.length);
+        out.write(value);
+        out.write(CRLF);
+    }
+
+    /**
+     * Writes an array header; the elements are written by the caller.
+     *
+     * @param out the output to write to
+     * @param size number of elements
+     * @throws IOException if writing fails
+     */
+    void writeArrayHeader(OutputStream out, int size) throws IOException {
+        writeHeader(out, '*', size);
+    }
+
+    /**
+     * Writes a simple string reply.
+     *
+     * @param out the output to write to
+     * @param value the string, without line breaks
+     * @throws IOException if writing fails
+     */
+    void writeSimple(OutputStream out, String value) throws IOException {
+        writeLine(out, '+', value);
+    }
+
+    /**
+     * Writes an error reply.
+     *
+     * @param out the output to write to
+     * @param message the error message, without line breaks
+     * @throws IOException if writing fails
+     */
+    void writeError(OutputStream out, String message) throws IOException {
+        writeLine(out, '-', message);
+    }
+
+    /**
+     * Writes an integer reply.
+     *
+     * @param out the output to write to
+     * @param value the integer
+     * @throws IOException if writing fails
+     */
+    void writeInteger(OutputStream out, long value) throws IOException {
+        writeLine(out, ':', Long.toString(value));
+    }
+
+    /**
+     * Reads one reply or command.
+     *
+     * @param in the input to read from
+     * @return the decoded value
+     * @throws EOFException if the stream ends before a complete value
+     * @throws IOException if reading fails or the data is malformed
+     */
+    Object read(InputStream in) throws IOException {
+        int type = in.read();
+        if (type < 0) {
+            throw new EOFException("Connection closed");
+        }
+        String line = readLine(in);
+        switch (type) {
+            case '+':
+                return line;
+            case '-':
+                return new ErrorReply(line);
+            case ':':
+                return parseLong(line);
+            case '$': {
+                int length = (int) parseLong(line);
+                if (length < 0) {
+                    return null;
+                }
+                byte[] value = readFully(in, length);
+                if (in.read() != '\r' || in.read() != '\n') {
+                    throw new IOException("Bulk string not terminated by CRLF");
+                }
+                return value;
+            }
+            case '*': {
+                int size = (int) parseLong(line);
+                if (size < 0) {
+                    return null;
+                }
+                List<Object> elements = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    elements.add(read(in));
+                }
+                return elements;
+            }
+            default:
+                throw new IOException("Unexpected RESP type byte " + type);
+        }
+    }
+
+    /**
+     * Encodes a command name or numeric argument.
+     *
+     * @param value the text
+     * @return its ASCII bytes
+     */
+    byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private void writeHeader(OutputStream out, char type, int value) throws IOException {
+        writeLine(out, type, Integer.toString(value));
+    }
+
+    private void writeLine(OutputStream out, char type, String value) throws IOException {
+        out.write(type);
+        out.write(value.getBytes(StandardCharsets.UTF_8));
+        out.write(CRLF);
+    }
+
+    private String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b < 0) {
+                throw new EOFException("Connection closed");
+            }
+            line.append((char) b);
+        }
+        if (in.read() != '\n') {
+            throw new IOException("Line not terminated by CRLF");
+        }
+        return line.toString();
+    }
+
+    private byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] value = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(value, read, length - read);
+            if (n < 0) {
+                throw new EOFException("Connection closed");
+            }
+            read += n;
+        }
+        return value;
+    }
+
+    private long parseLong(String line) throws IOException {
+        try {
+            return Long.parseLong(line);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed RESP integer " + line, e);
+        }
+    }
+}
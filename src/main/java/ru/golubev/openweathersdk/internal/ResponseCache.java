@@ -0,0 +1,530 @@
+package ru.golubev.openweathersdk.internal;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+import lombok.RequiredArgsConstructor;
+import ru.golubev.openweathersdk.CacheFootprint;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.WeatherCache;
+import ru.golubev.openweathersdk.WeatherCacheStats;
+import ru.golubev.openweathersdk.exception.InternalApiException;
+import ru.golubev.openweathersdk.exception.NotFoundException;
+import ru.golubev.openweathersdk.exception.OpenWeatherApiClientException;
+import ru.golubev.openweathersdk.exception.RequestCancellationException;
+import ru.golubev.openweathersdk.exception.ShutdownException;
+import ru.golubev.openweathersdk.exception.TooManyRequests;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+
+/**
+ * Weather response cache used by one or more clients.
+ *
+ * <p>Bundles the primary {@link WeatherCache}, built-in or custom, with the optional
+ * stale-if-error grace area and disk tier, so clients sharing a cache also share
+ * its fallback and spilled values. Instances are created by {@link CacheFactory}.</p>
+ *
+ * <p><b>Stale-if-error:</b></p>
+ * <ul>
+ *   <li>Entries expiring from the primary cache are moved to the grace area</li>
+ *   <li>Grace entries are kept for the configured maximum stale age</li>
+ *   <li>If loading a key fails because of a server error, rate limiting or a network
+ *       failure, the grace value is returned marked as stale</li>
+ *   <li>The stale value is kept in the primary cache for a short cooldown, so
+ *       lookups during an outage do not all call the API again</li>
+ *   <li>Other failures, such as an invalid API key or unknown city, are propagated</li>
+ * </ul>
+ *
+ * <p><b>Disk tier:</b></p>
+ * <ul>
+ *   <li>Entries evicted from memory because of the size limit are written to disk</li>
+ *   <li>A memory miss takes the entry from disk before calling the API</li>
+ *   <li>Disk entries survive {@link #close()} and are reused by the next cache
+ *       opened on the same directory</li>
+ * </ul>
+ *
+ * <p><b>Remote tier:</b></p>
+ * <ul>
+ *   <li>A miss of memory and disk looks the entry up on a Redis-compatible server
+ *       shared by several processes before calling the API</li>
+ *   <li>The lookup is part of the load, so concurrent misses of a key ask the
+ *       server once</li>
+ *   <li>A remote hit keeps the lifetime it has left counted from its load, so its
+ *       age on the server is not served again locally</li>
+ *   <li>Responses loaded from the API are written to the server asynchronously</li>
+ * </ul>
+ *
+ * <p><b>Shared cache revalidation:</b></p>
+ * <ul>
+ *   <li>Entries of the shared cache past their refresh time are reloaded by the
+ *       client reading them, see {@link #revalidateIfDue}</li>
+ *   <li>Other caches with a staleness window are revalidated by their cache loader</li>
+ * </ul>
+ *
+ * <p><b>Unknown cities:</b></p>
+ * <ul>
+ *   <li>A load failing with {@link NotFoundException} remembers the city name for a
+ *       short time, for every language and units</li>
+ *   <li>{@link #knownNotFound} returns a shared exception without a stack trace, so
+ *       clients can fail repeated lookups without calling the API</li>
+ * </ul>
+ *
+ * <p><b>City aliases:</b></p>
+ * <ul>
+ *   <li>A loaded response naming a different city than the query records the
+ *       query as an alias, and the response is also stored under the canonical key</li>
+ *   <li>{@link #canonical} maps later lookups of the alias to that key</li>
+ * </ul>
+ *
+ * <p><b>Access frequencies:</b></p>
+ * <ul>
+ *   <li>Caches of polling clients count lookups per key in a {@link FrequencySketch}</li>
+ *   <li>{@link #refresh} reloads a key from upstream without counting as an access,
+ *       so polling keeps hot keys fresh while cold keys decay and expire</li>
+ * </ul>
+ *
+ * <p><b>Change notifications:</b></p>
+ * <ul>
+ *   <li>Every fresh response entering the cache, from a lookup, a polling refresh
+ *       or a background reload, is offered to the subscribers of its key</li>
+ *   <li>{@link #changes} returns a publisher of the material changes of a key</li>
+ *   <li>Values restored from disk or a snapshot are not published</li>
+ * </ul>
+ *
+ * <p>With a snapshot path, {@link #close()} also saves the in-memory entries,
+ * which {@link CacheFactory} restores when the next cache is created.</p>
+ *
+ * @see CacheFactory
+ * @see WeatherCache
+ * @see DiskCacheTier
+ * @see WeatherClientImpl
+ * @since 1.0
+ */
+@RequiredArgsConstructor
+final class ResponseCache {
+
+    /**
+     * Primary tier holding current and in-flight responses.
+     */
+    private final WeatherCache store;
+
+    /**
+     * Grace area with expired responses, or null when stale-if-error is disabled.
+     */
+    private final Cache<CacheKey, WeatherResponse> fallback;
+
+    /**
+     * City names recently answered with 404, or null when disabled.
+     */
+    private final Cache<String, NotFoundException> notFound;
+
+    /**
+     * Learned city aliases, or null when disabled.
+     */
+    private final CityAliases aliases;
+
+    /**
+     * Recent access counts per key, or null when not tracked.
+     */
+    private final FrequencySketch frequencies;
+
+    /**
+     * Subscribers of material changes per key.
+     */
+    private final WeatherUpdates updates;
+
+    /**
+     * Second tier for entries evicted by size, or null when disabled.
+     */
+    private final DiskCacheTier disk;
+
+    /**
+     * Tier shared with other processes, or null when disabled.
+     */
+    private final RemoteCacheTier remote;
+
+    /**
+     * Expiry of the store keeping the age of lower tier hits, or null without such tiers.
+     */
+    private final CarriedLifetimeExpiry carriedExpiry;
+
+    /**
+     * File the primary cache is saved to on close, or null when snapshots are disabled.
+     */
+    private final Path snapshotPath;
+
+    /**
+     * Schedule of stale-while-revalidate reloads started by readers, or null when
+     * entries are revalidated by the cache loader or not at all.
+     */
+    private final Revalidation revalidation;
+
+    /**
+     * Returns the cached or in-flight response for the key.
+     *
+     * <p>A present key is recorded as a hit. Absent keys are not recorded as
+     * misses, since the caller is expected to follow up with {@link #get}.</p>
+     *
+     * @param key the cache key
+     * @return the cached future, or null if the key is not cached
+     */
+    CompletableFuture<WeatherResponse> getIfPresent(CacheKey key) {
+        return store.getIfPresent(key);
+    }
+
+    /**
+     * Records a lookup of the key for {@link #frequency}.
+     *
+     * @param key the looked up key
+     */
+    void recordAccess(CacheKey key) {
+        if (frequencies != null) {
+            frequencies.increment(key);
+        }
+    }
+
+    /**
+     * Estimates how often the key was looked up recently.
+     *
+     * @param key the cache key
+     * @return estimated recent lookups, or 0 if frequencies are not tracked
+     */
+    int frequency(CacheKey key) {
+        return frequencies != null ? frequencies.frequency(key) : 0;
+    }
+
+    /**
+     * Halves all access counts, so keys that are no longer looked up become cold.
+     */
+    void ageFrequencies() {
+        if (frequencies != null) {
+            frequencies.age();
+        }
+    }
+
+    /**
+     * Reloads the key from upstream and replaces its entry, even if it is still fresh.
+     *
+     * <p>The reload is not recorded as an access. A successful response is also
+     * written to the remote tier; a city that is no longer found is removed and
+     * remembered for {@link #knownNotFound}.</p>
+     *
+     * @param key the cache key
+     * @param loader starts the upstream call for the key
+     * @return future of the reloaded response
+     */
+    CompletableFuture<WeatherResponse> refresh(CacheKey key,
+                                               Function<CacheKey, CompletableFuture<WeatherResponse>> loader) {
+        return loader.apply(key).whenComplete((value, error) -> {
+            if (value != null) {
+                store.put(key, value);
+                if (remote != null) {
+                    remote.put(key, value);
+                }
+                updates.publish(key, value);
+            } else if (unwrap(error) instanceof NotFoundException) {
+                store.invalidate(key);
+                if (notFound != null) {
+                    rememberNotFound(key, error);
+                }
+            }
+        });
+    }
+
+    /**
+     * Revalidates the entry of a key in the background if it is past its refresh time.
+     *
+     * <p>Only caches created by {@link CacheFactory#createShared} are revalidated this
+     * way. Every client reading a shared entry passes its own API, so the reload is
+     * sent with the key of a client that actually uses the entry. Concurrent readers
+     * start one reload; the current value is served until it completes, and a failed
+     * reload keeps it until it expires. Loads in flight and stale fallbacks are not
+     * revalidated.</p>
+     *
+     * @param key the cache key that was read
+     * @param cached the future read for the key
+     * @param loader starts the upstream call for the key through the reader's API
+     */
+    void revalidateIfDue(CacheKey key,
+                         CompletableFuture<WeatherResponse> cached,
+                         Function<CacheKey, CompletableFuture<WeatherResponse>> loader) {
+        if (revalidation == null) {
+            return;
+        }
+        WeatherResponse current = cached.isDone() && !cached.isCompletedExceptionally() ? cached.join() : null;
+        if (!revalidation.start(key, current)) {
+            return;
+        }
+        try {
+            refresh(key, loader).whenComplete((value, error) -> revalidation.finish(key));
+        } catch (RuntimeException e) {
+            revalidation.finish(key);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a publisher of the material changes of a key.
+     *
+     * @param key the canonical cache key
+     * @param threshold decides which responses are published
+     * @return publisher shared with other subscribers of the key and threshold
+     */
+    Flow.Publisher<WeatherResponse> changes(CacheKey key, ChangeThreshold threshold) {
+        return updates.publisher(key, threshold);
+    }
+
+    /**
+     * Returns the keys that have change subscribers, so polling keeps them fresh.
+     *
+     * @return live view of the subscribed keys
+     */
+    Set<CacheKey> subscribedKeys() {
+        return updates.subscribedKeys();
+    }
+
+    /**
+     * Returns the key whose entry serves the given key.
+     *
+     * @param key the normalized cache key
+     * @return the canonical key if the key is a known alias, otherwise the key itself
+     */
+    CacheKey canonical(CacheKey key) {
+        return aliases != null ? aliases.resolve(key) : key;
+    }
+
+    /**
+     * Returns the remembered failure of a city that was recently not found.
+     *
+     * @param key the cache key
+     * @return shared exception without a stack trace, or null if the city is not
+     *         known to be missing
+     */
+    NotFoundException knownNotFound(CacheKey key) {
+        return notFound != null ? notFound.getIfPresent(key.city()) : null;
+    }
+
+    /**
+     * Returns the cached future for the key, starting a load if there is none.
+     *
+     * <p>Concurrent callers for the same key receive the same in-flight future, so
+     * the lower tiers are also asked once per key. With a disk tier, a load first
+     * takes the key from disk on the tier's reader threads. With a remote tier, it
+     * then asks the server, and responses from the loader are written back to it.
+     * A lower tier hit keeps the lifetime it has left; the loader is only called if
+     * neither tier has the key. Cities the loader fails to find are remembered for
+     * {@link #knownNotFound}. Responses naming a different city teach an alias and
+     * are stored under the canonical key too. Loaded responses are offered to the
+     * change subscribers of the key. With stale-if-error, an upstream failure
+     * completes the load with the grace value marked as stale.</p>
+     *
+     * @param key the cache key
+     * @param loader starts the upstream call for the key
+     * @return future shared by all callers waiting for the key
+     */
+    CompletableFuture<WeatherResponse> get(CacheKey key,
+                                           Function<CacheKey, CompletableFuture<WeatherResponse>> loader) {
+        Function<CacheKey, CompletableFuture<WeatherResponse>> api = notFound == null
+            ? loader
+            : k -> loader.apply(k).whenComplete((value, error) -> rememberNotFound(k, error));
+        Function<CacheKey, CompletableFuture<WeatherResponse>> shared = remote == null
+            ? api
+            : k -> remote.get(k).thenCompose(hit -> {
+                WeatherResponse value = hit != null ? carriedExpiry.carry(hit.getValue(), hit.getExpiresAt()) : null;
+                if (value != null) {
+                    return CompletableFuture.completedFuture(value);
+                }
+                return api.apply(k).whenComplete((loaded, error) -> {
+                    if (loaded != null) {
+                        remote.put(k, loaded);
+                    }
+                });
+            });
+        Function<CacheKey, CompletableFuture<WeatherResponse>> fresh = k -> shared.apply(k)
+            .whenComplete((value, error) -> {
+                if (value != null) {
+                    onLoaded(k, value);
+                }
+            });
+        Function<CacheKey, CompletableFuture<WeatherResponse>> upstream = fallback == null
+            ? fresh
+            : k -> withStaleFallback(k, fresh.apply(k));
+        Function<CacheKey, CompletableFuture<WeatherResponse>> tiered = disk == null
+            ? upstream
+            : k -> disk.takeAsync(k).thenCompose(spilled -> {
+                WeatherResponse value = spilled != null
+                    ? carriedExpiry.carry(spilled.getValue(), spilled.getExpiresAt())
+                    : null;
+                return value != null ? CompletableFuture.completedFuture(value) : upstream.apply(k);
+            });
+        return store.get(key, (k, executor) -> tiered.apply(k));
+    }
+
+    /**
+     * Learns the alias of a response that did not come from memory and offers it
+     * to the change subscribers of the key.
+     *
+     * @param key the looked up key
+     * @param value the loaded response
+     */
+    private void onLoaded(CacheKey key, WeatherResponse value) {
+        if (aliases != null) {
+            learnAlias(key, value);
+        }
+        updates.publish(key, value);
+    }
+
+    /**
+     * Records an alias for the key if the response names a different city, and
+     * stores the response under the canonical key unless it is already cached.
+     *
+     * @param key the loaded key
+     * @param value the loaded response
+     */
+    private void learnAlias(CacheKey key, WeatherResponse value) {
+        CacheKey canonical = aliases.learn(key, value);
+        if (canonical != key && !store.keys().contains(canonical)) {
+            store.put(canonical, value);
+            updates.publish(canonical, value);
+        }
+    }
+
+    /**
+     * Remembers the city of the key if the load failed because it was not found.
+     *
+     * @param key the loaded key
+     * @param error the load failure, or null on success
+     */
+    private void rememberNotFound(CacheKey key, Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof NotFoundException) {
+            NotFoundException e = (NotFoundException) cause;
+            notFound.put(key.city(), new NotFoundException(e.status(), e.message(), false));
+        }
+    }
+
+    /**
+     * Returns the cause of a completion failure.
+     *
+     * @param error the failure, possibly wrapped in {@link CompletionException}
+     * @return the wrapped cause, or the failure itself
+     */
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * Substitutes the grace value for eligible upstream failures of a load.
+     *
+     * <p>The substituted value completes the load, so it is stored in the primary
+     * tier, where {@link CacheFactory} expires stale values after a short cooldown.
+     * Until then, lookups of the key are answered with it instead of calling the
+     * failing upstream again.</p>
+     *
+     * @param key the cache key the future belongs to
+     * @param response the future of the upstream call
+     * @return a future that completes with a stale value instead of an eligible failure
+     */
+    private CompletableFuture<WeatherResponse> withStaleFallback(CacheKey key,
+                                                                 CompletableFuture<WeatherResponse> response) {
+
+        return response.handle((value, error) -> {
+            if (error == null) {
+                return value;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause()
+                : error;
+            WeatherResponse stale = isUpstreamFailure(cause) ? fallback.getIfPresent(key) : null;
+            if (stale == null) {
+                throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(cause);
+            }
+            return stale.withStale(true);
+        });
+    }
+
+    /**
+     * Returns a live view of the keys in the primary tier.
+     *
+     * @return set of cached keys
+     */
+    Set<CacheKey> keys() {
+        return store.keys();
+    }
+
+    /**
+     * Estimates the memory held by the primary tier.
+     *
+     * <p>The grace area and the disk tier are not included.</p>
+     *
+     * @return entry count and estimated bytes
+     */
+    CacheFootprint footprint() {
+        return store.footprint();
+    }
+
+    /**
+     * Returns the statistics of the primary tier.
+     *
+     * @return cumulative counters and the current footprint
+     */
+    WeatherCacheStats stats() {
+        return store.stats();
+    }
+
+    /**
+     * Performs pending maintenance operations.
+     */
+    void cleanUp() {
+        store.cleanUp();
+        if (fallback != null) {
+            fallback.cleanUp();
+        }
+    }
+
+    /**
+     * Completes change subscribers, saves the snapshot if configured, discards
+     * in-memory entries and closes the disk and remote tiers, keeping their stored entries.
+     */
+    void close() {
+        updates.close();
+        if (snapshotPath != null) {
+            CacheSnapshot.write(snapshotPath, store);
+        }
+        store.invalidateAll();
+        if (fallback != null) {
+            fallback.invalidateAll();
+        }
+        if (notFound != null) {
+            notFound.invalidateAll();
+        }
+        if (aliases != null) {
+            aliases.invalidateAll();
+        }
+        cleanUp();
+        if (disk != null) {
+            disk.close();
+        }
+        if (remote != null) {
+            remote.close();
+        }
+    }
+
+    /**
+     * Checks whether a failure is caused by upstream unavailability.
+     *
+     * @param error the failure cause
+     * @return true for server errors, rate limiting and network failures
+     */
+    private static boolean isUpstreamFailure(Throwable error) {
+        if (error instanceof InternalApiException || error instanceof TooManyRequests) {
+            return true;
+        }
+        return error instanceof OpenWeatherApiClientException
+            && !(error instanceof RequestCancellationException)
+            && !(error instanceof ShutdownException);
+    }
+}
@@ -0,0 +1,74 @@
+package ru.golubev.openweathersdk.internal;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+import lombok.RequiredArgsConstructor;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+
+/**
+ * Stale-while-revalidate schedule of a cache whose entries are revalidated by the
+ * clients reading them rather than by a cache loader.
+ *
+ * <p>Used by the shared cache: it has no owner whose API could be used for
+ * background reloads, so a client reading an entry past its refresh time reloads
+ * it through its own API.</p>
+ *
+ * <p>The age of an entry is derived from its remaining lifetime, so entries put
+ * back from the disk, remote or snapshot with the lifetime they had left keep
+ * their age. A stale fallback served after a failed load is not revalidated: it
+ * is only kept for a short retry cooldown, after which it expires and the next
+ * read loads the key again.</p>
+ *
+ * @see ResponseCache#revalidateIfDue
+ * @since 1.0
+ */
+@RequiredArgsConstructor
+final class Revalidation {
+
+    /**
+     * Returns the remaining lifetime of the entry of a key in milliseconds, or 0 if absent.
+     */
+    private final ToLongFunction<CacheKey> remainingMillis;
+
+    /**
+     * Full lifetime of an entry: TTL plus the staleness window.
+     */
+    private final long lifetimeMillis;
+
+    /**
+     * Age after which an entry is revalidated.
+     */
+    private final long refreshAfterMillis;
+
+    /**
+     * Keys being revalidated, so each entry is reloaded once however many clients read it.
+     */
+    private final Set<CacheKey> inFlight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Claims the revalidation of a key if its entry is past the refresh time.
+     *
+     * @param key the cache key
+     * @param current the cached response, or null while it is being loaded
+     * @return true if the caller must reload the key and then call {@link #finish}
+     */
+    boolean start(CacheKey key, WeatherResponse current) {
+        // The cooldown of a stale fallback is far shorter than its lifetime, so it would always look due
+        if (current == null || current.isStale()) {
+            return false;
+        }
+        long remaining = remainingMillis.applyAsLong(key);
+        return remaining > 0 && lifetimeMillis - remaining >= refreshAfterMillis && inFlight.add(key);
+    }
+
+    /**
+     * Releases a key claimed by {@link #start}.
+     *
+     * @param key the cache key
+     */
+    void finish(CacheKey key) {
+        inFlight.remove(key);
+    }
+}
@@ -0,0 +1,297 @@
+package ru.golubev.openweathersdk.internal;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hashed timing wheel running delayed tasks of all polling clients.
+ *
+ * <p>Tasks are placed in one of {@value #WHEEL_SIZE} buckets by their deadline.
+ * A single ticker thread advances the wheel one bucket per tick and hands due
+ * tasks to a small pool of worker threads. Scheduling is a lock-free queue
+ * insert and each tick only visits one bucket, so millions of pending tasks
+ * cost little more than their memory. Tasks run within one tick after their
+ * deadline.</p>
+ *
+ * <p><b>Characteristics:</b></p>
+ * <ul>
+ *   <li>Precision of one tick, typically {@value #DEFAULT_TICK_MILLIS} ms</li>
+ *   <li>Delays longer than a revolution wait in their bucket for the remaining rounds</li>
+ *   <li>Cancelled tasks are dropped when their bucket is next visited</li>
+ *   <li>Ticker and workers are daemon threads; pending tasks are discarded on {@link #close()}</li>
+ * </ul>
+ *
+ * @see OpenWeatherSdk
+ * @see PollingWeatherClientImpl
+ * @since 1.0
+ */
+@Slf4j
+final class TimingWheel implements AutoCloseable {
+
+    /**
+     * Default duration of one tick.
+     */
+    static final long DEFAULT_TICK_MILLIS = 10;
+
+    /**
+     * Default number of buckets; one revolution spans this many ticks.
+     */
+    private static final int WHEEL_SIZE = 4096;
+
+    /**
+     * Upper bound of newly scheduled tasks placed per tick, so a burst of
+     * scheduling cannot delay expiration of due tasks.
+     */
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    /**
+     * Handle of a scheduled task.
+     */
+    static final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private volatile boolean cancelled;
+
+        // Owned by the ticker thread.
+        private long remainingRounds;
+
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Prevents the task from running if it has not started yet.
+         */
+        void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Checks whether the task was cancelled.
+         *
+         * @return true after {@link #cancel()}
+         */
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final long tickNanos;
+    private final int mask;
+    private final long startTime = System.nanoTime();
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final ExecutorService workers;
+    private final Thread ticker;
+
+    // Owned by the ticker thread.
+    private final List<Timeout>[] buckets;
+    private long tick;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates the wheel and starts its ticker.
+     *
+     * @param tick duration of one tick, the precision of the wheel
+     * @param workerThreads number of threads running due tasks
+     * @param name prefix of the thread names
+     * @throws IllegalArgumentException if the tick is shorter than a millisecond
+     *                                  or there are no worker threads
+     */
+    TimingWheel(Duration tick, int workerThreads, String name) {
+        this(tick, WHEEL_SIZE, workerThreads, name);
+    }
+
+    /**
+     * Creates a wheel of the given size and starts its ticker.
+     *
+     * @param tick duration of one tick, the precision of the wheel
+     * @param wheelSize number of buckets, a power of two
+     * @param workerThreads number of threads running due tasks
+     * @param name prefix of the thread names
+     * @throws IllegalArgumentException if the tick is shorter than a millisecond,
+     *                                  the size is not a power of two or there
+     *                                  are no worker threads
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimingWheel(Duration tick, int wheelSize, int workerThreads, String name) {
+        if (tick.toMillis() < 1) {
+            throw new IllegalArgumentException("tick must be at least 1 ms, got " + tick);
+        }
+        if (workerThreads <= 0) {
+            throw new IllegalArgumentException("workerThreads must be positive, got " + workerThreads);
+        }
+        if (wheelSize <= 0 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("wheelSize must be a power of two, got " + wheelSize);
+        }
+        this.tickNanos = tick.toNanos();
+        this.mask = wheelSize - 1;
+        this.buckets = new List[wheelSize];
+        this.workers = Executors.newFixedThreadPool(workerThreads, daemonThreads(name + "-worker-"));
+        this.ticker = daemonThreads(name).newThread(this::run);
+        this.ticker.start();
+    }
+
+    /**
+     * Schedules a task to run once after the delay.
+     *
+     * @param task the task, run on a worker thread
+     * @param delay time until the task runs
+     * @param unit unit of the delay
+     * @return handle to cancel the task
+     * @throws RejectedExecutionException if the wheel is closed
+     */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (closed) {
+            throw new RejectedExecutionException("Timing wheel is closed");
+        }
+        long deadline = System.nanoTime() - startTime + Math.max(0, unit.toNanos(delay));
+        Timeout timeout = new Timeout(task, deadline);
+        size.incrementAndGet();
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the number of tasks that have neither run nor been discarded.
+     *
+     * @return number of pending tasks, including cancelled ones not yet dropped
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Stops the ticker and the workers. Pending tasks are discarded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        ticker.interrupt();
+        workers.shutdownNow();
+    }
+
+    private void run() {
+        while (!closed) {
+            long now = waitForNextTick();
+            if (now < 0) {
+                return;
+            }
+            transferScheduled();
+            expire(bucket((int) (tick & mask)));
+            tick++;
+        }
+    }
+
+    /**
+     * Sleeps until the end of the current tick.
+     *
+     * @return time since start, or -1 if the wheel was closed
+     */
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long now = System.nanoTime() - startTime;
+            long sleepNanos = deadline - now;
+            if (sleepNanos <= 0) {
+                return now;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                if (closed) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Places newly scheduled tasks into their buckets.
+     */
+    private void transferScheduled() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = scheduled.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.cancelled) {
+                size.decrementAndGet();
+                continue;
+            }
+            long dueTick = timeout.deadline / tickNanos;
+            timeout.remainingRounds = Math.max(0, dueTick - tick) / buckets.length;
+            // Tasks already due go into the current bucket
+            long target = Math.max(dueTick, tick);
+            bucket((int) (target & mask)).add(timeout);
+        }
+    }
+
+    /**
+     * Runs the due tasks of a bucket and counts down the rounds of the others.
+     */
+    private void expire(List<Timeout> bucket) {
+        int kept = 0;
+        for (int i = 0; i < bucket.size(); i++) {
+            Timeout timeout = bucket.get(i);
+            if (timeout.cancelled) {
+                size.decrementAndGet();
+            } else if (timeout.remainingRounds <= 0) {
+                size.decrementAndGet();
+                dispatch(timeout);
+            } else {
+                timeout.remainingRounds--;
+                bucket.set(kept++, timeout);
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+    }
+
+    private void dispatch(Timeout timeout) {
+        try {
+            workers.execute(() -> {
+                if (timeout.cancelled) {
+                    return;
+                }
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    log.warn("Timing wheel task failed", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // closed concurrently
+        }
+    }
+
+    private List<Timeout> bucket(int index) {
+        List<Timeout> bucket = buckets[index];
+        if (bucket == null) {
+            bucket = new ArrayList<>();
+            buckets[index] = bucket;
+        }
+        return bucket;
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            String threadName = name.endsWith("-") ? name + counter.incrementAndGet() : name;
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
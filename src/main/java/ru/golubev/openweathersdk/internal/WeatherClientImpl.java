@@ -1,13 +1,37 @@
 package ru.golubev.openweathersdk.internal;
 
 import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
+import ru.golubev.openweathersdk.CacheFootprint;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.SubscriptionConfigurer;
 import ru.golubev.openweathersdk.WeatherClient;
 import ru.golubev.openweathersdk.SupportedLanguage;
 import ru.golubev.openweathersdk.Units;
+import ru.golubev.openweathersdk.WarmUpConfigurer;
+import ru.golubev.openweathersdk.WarmUpProgress;
+import ru.golubev.openweathersdk.WeatherCacheStats;
+import ru.golubev.openweathersdk.exception.NotFoundException;
 import ru.golubev.openweathersdk.model.WeatherResponse;
 
 /**
@@ -30,8 +54,14 @@ import ru.golubev.openweathersdk.model.WeatherResponse;
  * <ul>
  *   <li>Cache hit: returns immediately from local cache</li>
  *   <li>Cache miss: calls OpenWeather API and caches response</li>
- *   <li>Cache keys: city names (case-sensitive)</li>
+ *   <li>Concurrent misses: share a single in-flight API request per city</li>
+ *   <li>Cache keys: {@link CacheKey} of normalized city name, language and units</li>
+ *   <li>Spelling variants: case, whitespace and learned aliases share one entry, see {@link CityAliases}</li>
+ *   <li>Coordinate lookups: cached by the geohash cell containing the point, see {@link GeoHash}</li>
  *   <li>Eviction: based on TTL and LRU policy</li>
+ *   <li>Stale entries: served within the configured staleness window while revalidating</li>
+ *   <li>Upstream failures: answered with the last expired value if stale-if-error is enabled</li>
+ *   <li>Unknown cities: failed without an API call while the last 404 is remembered</li>
  * </ul>
  *
  * @see PollingWeatherClientImpl
@@ -57,6 +87,11 @@ public class WeatherClientImpl implements WeatherClient, AutoCloseable {
      */
     private final Units units;
 
+    /**
+     * Geohash precision of the cells coordinate lookups are cached by.
+     */
+    private final int geohashPrecision;
+
     /**
      * Indicates whether the cache instance is shared with other clients.
      * When true, cache invalidation is skipped during cleanup.
@@ -64,15 +99,35 @@ public class WeatherClientImpl implements WeatherClient, AutoCloseable {
     private final boolean isCacheShared;
 
     /**
-     * Cache instance for storing weather responses by city name.
+     * Cache instance for storing weather responses by city, language and units.
+     *
+     * <p>Holds futures rather than plain values, so a pending API call is visible
+     * to every caller asking for the same city until it completes.</p>
      */
-    private final Cache<String, WeatherResponse> responseCache;
+    private final ResponseCache responseCache;
 
     /**
      * Underlying API client for OpenWeather service communication.
      */
+    @Getter(AccessLevel.PACKAGE)
+    @Accessors(fluent = true)
     private final OpenWeatherApi weatherApi;
 
+    /**
+     * Index of this client's interned cache keys by city name as given by callers.
+     *
+     * <p>Lets the hit path find the key without allocating or normalizing again. Values are weak, so an
+     * entry disappears once its key is no longer held by the response cache.</p>
+     */
+    private final Cache<String, CacheKey> cacheKeys = Caffeine.newBuilder()
+        .weakValues()
+        .build();
+
+    /**
+     * Creates cache keys bound to this client's language and units.
+     */
+    private final Function<String, CacheKey> keyFactory = this::newCacheKey;
+
     /**
      * Retrieves current weather data for specified city with caching.
      *
@@ -80,6 +135,7 @@ public class WeatherClientImpl implements WeatherClient, AutoCloseable {
      * <ol>
      *   <li>Check cache for existing response</li>
      *   <li>If cache hit, return cached response immediately</li>
+     *   <li>If another call is already loading the city, wait for its result</li>
      *   <li>If cache miss, call OpenWeather API</li>
      *   <li>Cache API response for future requests</li>
      *   <li>Return weather data</li>
@@ -87,6 +143,7 @@ public class WeatherClientImpl implements WeatherClient, AutoCloseable {
      *
      * @param city the city name for weather lookup
      * @return current weather data for the specified city
+     * @throws IllegalArgumentException if the city starts with the reserved {@code geohash:} prefix
      *
      * <p><b>Logging examples:</b></p>
      * <pre>
@@ -102,26 +159,7 @@ public class WeatherClientImpl implements WeatherClient, AutoCloseable {
             log.debug("WeatherClient#getWeather called with city: {}", city);
         }
 
-        WeatherResponse response = responseCache.getIfPresent(city);
-
-        if (response != null) {
-            if (loggingEnabled) {
-                log.debug("Cache hit for city: {}", city);
-            }
-            return response;
-        }
-
-        if (loggingEnabled) {
-            log.debug("Cache miss. Calling remote API for city: {}", city);
-        }
-
-        response = weatherApi.weather(city, language, units);
-        responseCache.put(city, response);
-
-        if (loggingEnabled) {
-            log.debug("Response value for city: {}", city);
-        }
-        return response;
+        return await(load(city));
     }
 
     /**
@@ -131,6 +169,7 @@ public class WeatherClientImpl implements WeatherClient, AutoCloseable {
      * <ol>
      *   <li>Check cache for existing response</li>
      *   <li>If cache hit, return completed future with cached data</li>
+     *   <li>If the city is already being loaded, return a future joined to that call</li>
      *   <li>If cache miss, initiate async API call</li>
      *   <li>Cache response when async call completes</li>
      *   <li>Return CompletableFuture for the operation</li>
@@ -138,6 +177,7 @@ public class WeatherClientImpl implements WeatherClient, AutoCloseable {
      *
      * @param city the city name for weather lookup
      * @return CompletableFuture that will be completed with weather data
+     * @throws IllegalArgumentException if the city starts with the reserved {@code geohash:} prefix
      *
      * <p><b>Note:</b> Currently uses hardcoded RUSSIAN language and METRIC units
      * for async calls - this should be fixed to use configured language/units.</p>
@@ -148,37 +188,327 @@ public class WeatherClientImpl implements WeatherClient, AutoCloseable {
             log.debug("WeatherClient#getWeatherAsync called with city: {}", city);
         }
 
-        WeatherResponse response = responseCache.getIfPresent(city);
+        // Hand out a copy so a caller cancelling its future cannot fail the shared load
+        return load(city).copy();
+    }
 
-        if (response != null) {
-            if (loggingEnabled) {
-                log.debug("Cache hit for city: {}", city);
+    /**
+     * Retrieves current weather data for specified coordinates with caching.
+     *
+     * <p>The coordinates are snapped to their geohash cell, which is then looked up
+     * like a city, so nearby points share one cached response and one API call.</p>
+     *
+     * @param latitude latitude in degrees, from -90 to 90
+     * @param longitude longitude in degrees, from -180 to 180
+     * @return current weather data for the cell containing the coordinates
+     * @throws IllegalArgumentException if a coordinate is out of range
+     */
+    @Override
+    public WeatherResponse getWeather(double latitude, double longitude) {
+        if (loggingEnabled) {
+            log.debug("WeatherClient#getWeather called with coordinates: {}, {}", latitude, longitude);
+        }
+
+        CacheKey cell = cellKey(latitude, longitude);
+        return await(load(cell, cell.city()));
+    }
+
+    /**
+     * Retrieves current weather data for specified coordinates asynchronously.
+     *
+     * @param latitude latitude in degrees, from -90 to 90
+     * @param longitude longitude in degrees, from -180 to 180
+     * @return CompletableFuture that will be completed with weather data
+     * @throws IllegalArgumentException if a coordinate is out of range
+     * @see #getWeather(double, double)
+     */
+    @Override
+    public CompletableFuture<WeatherResponse> getWeatherAsync(double latitude, double longitude) {
+        if (loggingEnabled) {
+            log.debug("WeatherClient#getWeatherAsync called with coordinates: {}, {}", latitude, longitude);
+        }
+
+        CacheKey cell = cellKey(latitude, longitude);
+        return load(cell, cell.city()).copy();
+    }
+
+    /**
+     * Loads the given cities into the cache with bounded parallelism.
+     *
+     * <p><b>Execution flow:</b></p>
+     * <ol>
+     *   <li>Start up to {@code concurrency} loads through {@link #getWeatherAsync(String)}</li>
+     *   <li>Space API calls to stay within {@code maxRequestsPerSecond}; cities already
+     *       cached or being loaded are served without waiting</li>
+     *   <li>Report progress after every finished city</li>
+     *   <li>Complete the returned future when {@code targetFill} of the cities is loaded</li>
+     * </ol>
+     *
+     * <p>Loads share the cache with regular lookups, so a warm-up through any client
+     * of the shared cache warms it for all of them. A loaded city may later be
+     * evicted if the cache is smaller than the list.</p>
+     *
+     * @param cities city names to load
+     * @param customizer adjusts the warm-up configuration
+     * @return future completed with the progress when the target fill is reached
+     * @throws IllegalArgumentException if the configuration is invalid
+     */
+    @Override
+    public CompletableFuture<WarmUpProgress> warmUp(Collection<String> cities, Consumer<WarmUpConfigurer> customizer) {
+        Objects.requireNonNull(cities, "cities must not be null");
+        Objects.requireNonNull(customizer, "customizer must not be null");
+
+        WarmUpConfigurer configurer = new WarmUpConfigurer();
+        customizer.accept(configurer);
+        if (configurer.concurrency() <= 0) {
+            throw new IllegalArgumentException("concurrency must be positive, got " + configurer.concurrency());
+        }
+        if (!(configurer.maxRequestsPerSecond() >= 0)) {
+            throw new IllegalArgumentException(
+                "maxRequestsPerSecond must not be negative, got " + configurer.maxRequestsPerSecond());
+        }
+        if (!(configurer.targetFill() >= 0 && configurer.targetFill() <= 1)) {
+            throw new IllegalArgumentException("targetFill must be between 0 and 1, got " + configurer.targetFill());
+        }
+
+        if (loggingEnabled) {
+            log.info("WeatherClient#warmUp called with {} cities; config={}", cities.size(), configurer);
+        }
+        return new CacheWarmer(List.copyOf(cities), this::getWeatherAsync, this::isCached, configurer, loggingEnabled)
+            .start();
+    }
+
+    /**
+     * Loads the cities listed in a file into the cache.
+     *
+     * @param file UTF-8 file with one city per line; blank lines and {@code #} comments are skipped
+     * @param customizer adjusts the warm-up configuration
+     * @return future completed with the progress when the target fill is reached
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the configuration is invalid
+     * @see #warmUp(Collection, Consumer)
+     */
+    @Override
+    public CompletableFuture<WarmUpProgress> warmUp(Path file, Consumer<WarmUpConfigurer> customizer)
+            throws IOException {
+        List<String> cities = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String city = line.trim();
+            if (!city.isEmpty() && !city.startsWith("#")) {
+                cities.add(city);
             }
+        }
+        return warmUp(cities, customizer);
+    }
 
-            return CompletableFuture.completedFuture(response);
+    /**
+     * Subscribes to material changes of the weather in a city.
+     *
+     * <p><b>Execution flow:</b></p>
+     * <ol>
+     *   <li>Resolve the city to its canonical cache key, like a lookup</li>
+     *   <li>Return a publisher joining the cache's stream of that key and thresholds
+     *       when subscribed to</li>
+     *   <li>Every fresh response stored under the key is compared with the last
+     *       emitted one and emitted if it changed materially</li>
+     * </ol>
+     *
+     * <p>Subscribing does not load the city. Subscribers of the shared cache share
+     * streams with subscribers of other clients with the same language and units.</p>
+     *
+     * @param city name of the city
+     * @param customizer adjusts the change thresholds and the subscriber buffer
+     * @return publisher of materially changed responses
+     * @throws IllegalArgumentException if the city is blank or reserved, or the configuration is invalid
+     */
+    @Override
+    public Flow.Publisher<WeatherResponse> subscribe(String city, Consumer<SubscriptionConfigurer> customizer) {
+        Objects.requireNonNull(city, "city must not be null");
+        Objects.requireNonNull(customizer, "customizer must not be null");
+        if (city.isBlank()) {
+            throw new IllegalArgumentException("city must not be blank");
+        }
+
+        SubscriptionConfigurer configurer = new SubscriptionConfigurer();
+        customizer.accept(configurer);
+        if (!(configurer.temperatureDelta() >= 0 && configurer.feelsLikeDelta() >= 0
+            && configurer.windSpeedDelta() >= 0)) {
+            throw new IllegalArgumentException("Change deltas must not be negative, got " + configurer);
+        }
+        if (configurer.visibilityDelta() < 0) {
+            throw new IllegalArgumentException(
+                "visibilityDelta must not be negative, got " + configurer.visibilityDelta());
+        }
+        if (configurer.bufferCapacity() <= 0) {
+            throw new IllegalArgumentException(
+                "bufferCapacity must be positive, got " + configurer.bufferCapacity());
         }
 
         if (loggingEnabled) {
-            log.debug("Cache miss. Calling remote API for city: {}", city);
+            log.debug("WeatherClient#subscribe called with city: {}; config={}", city, configurer);
         }
+        return responseCache.changes(cacheKey(city), ChangeThreshold.of(configurer));
+    }
+
+    /**
+     * Returns the estimated memory footprint of this client's cache.
+     *
+     * @return footprint of the client cache, or of the shared cache if it is used
+     */
+    @Override
+    public CacheFootprint cacheFootprint() {
+        return responseCache.footprint();
+    }
+
+    /**
+     * Returns statistics of this client's cache.
+     *
+     * @return statistics of the client cache, or of the shared cache if it is used
+     */
+    @Override
+    public WeatherCacheStats cacheStats() {
+        return responseCache.stats();
+    }
 
-        return weatherApi.weatherAsync(city, language, units)
-            .whenComplete((r, e) -> {
+    /**
+     * Returns the cached future for the city, starting an API call if there is none.
+     *
+     * <p>The pending future is stored in the cache before the request is sent, so
+     * concurrent callers of this client and of every client sharing the cache
+     * join the same request instead of issuing their own. Failed futures are
+     * removed by the cache and the next call retries. If stale-if-error is enabled,
+     * upstream failures are answered with the last expired value marked as stale,
+     * which is served for a short cooldown before the API is tried again. Cities
+     * recently answered with 404 fail with the remembered exception. A hit of a
+     * shared entry past its refresh time is revalidated through this client's API.</p>
+     *
+     * @param city the city name for weather lookup
+     * @return future shared by all callers waiting for the city
+     * @throws IllegalArgumentException if the city name is reserved for coordinate cells
+     */
+    private CompletableFuture<WeatherResponse> load(String city) {
+        return load(cacheKey(city), city);
+    }
+
+    /**
+     * Returns the cached future for a key, starting an API call if there is none.
+     *
+     * @param cacheKey the key of a city or of a coordinate cell
+     * @param city the city name or cell key, for logging
+     * @return future shared by all callers waiting for the key
+     * @see #load(String)
+     */
+    private CompletableFuture<WeatherResponse> load(CacheKey cacheKey, String city) {
+        responseCache.recordAccess(cacheKey);
+        CompletableFuture<WeatherResponse> response = responseCache.getIfPresent(cacheKey);
+
+        if (response != null) {
+            if (loggingEnabled) {
+                log.debug("Cache hit for city: {}", city);
+            }
+            responseCache.revalidateIfDue(cacheKey, response, weatherApi::weatherAsync);
+        } else {
+            NotFoundException notFound = responseCache.knownNotFound(cacheKey);
+            if (notFound != null) {
                 if (loggingEnabled) {
-                    log.debug("Async weather call complete for  city: {}", city);
+                    log.debug("City is known to be missing: {}", city);
                 }
+                return CompletableFuture.failedFuture(notFound);
+            }
 
-                if (r != null) {
-                    responseCache.put(city, r);
-                    if (loggingEnabled) {
-                        log.debug("Response value for city: {}", city);
-                    }
+            response = responseCache.get(cacheKey, key -> {
+                if (loggingEnabled) {
+                    log.debug("Cache miss. Calling remote API for city: {}", city);
                 }
+
+                return weatherApi.weatherAsync(key)
+                    .whenComplete((r, e) -> {
+                        if (r != null && loggingEnabled) {
+                            log.debug("Response value for city: {}", city);
+                        }
+                    });
             });
+        }
+
+        return response;
     }
 
     /**
-     * Returns set of city names currently in the cache.
+     * Returns the key whose entry serves the city.
+     *
+     * @param city the city name as given by the caller
+     * @return interned key of the normalized city, or of its canonical name if it is an alias
+     */
+    private CacheKey cacheKey(String city) {
+        return responseCache.canonical(cacheKeys.get(city, keyFactory));
+    }
+
+    /**
+     * Checks whether the city is cached or being loaded, without recording a hit.
+     *
+     * @param city the city name
+     * @return true if the cache holds an entry for the city
+     */
+    private boolean isCached(String city) {
+        try {
+            return responseCache.keys().contains(cacheKey(city));
+        } catch (IllegalArgumentException e) {
+            // Reserved names are not cached; their load fails and is counted as a failure
+            return false;
+        }
+    }
+
+    /**
+     * Creates the interned cache key for a city with this client's language and units.
+     *
+     * <p>Names starting with {@value GeoHash#CELL_PREFIX} are rejected, so a city
+     * query can never be taken for a coordinate cell.</p>
+     *
+     * @param city the city name
+     * @return cache key of the normalized city name
+     * @throws IllegalArgumentException if the name is reserved for coordinate cells
+     */
+    private CacheKey newCacheKey(String city) {
+        String normalized = CityAliases.normalize(city);
+        if (GeoHash.isCellKey(normalized)) {
+            throw new IllegalArgumentException("city must not start with " + GeoHash.CELL_PREFIX + ", got " + city);
+        }
+        return CacheKey.of(normalized, language, units);
+    }
+
+    /**
+     * Creates the cache key of the geohash cell containing the coordinates.
+     *
+     * @param latitude latitude in degrees, from -90 to 90
+     * @param longitude longitude in degrees, from -180 to 180
+     * @return cache key of the cell with this client's language and units
+     * @throws IllegalArgumentException if a coordinate is out of range
+     */
+    private CacheKey cellKey(double latitude, double longitude) {
+        return CacheKey.of(GeoHash.cellKey(latitude, longitude, geohashPrecision), language, units);
+    }
+
+    /**
+     * Waits for a shared future and rethrows the original SDK exception on failure.
+     *
+     * @param future the future to wait for
+     * @return the completed weather response
+     */
+    private static WeatherResponse await(CompletableFuture<WeatherResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns set of city names currently in the cache for this client's language and units.
+     *
+     * <p>Entries stored by clients with other settings in a shared cache are skipped.</p>
      *
      * @return set of cached city names
      *
@@ -186,7 +516,10 @@ public class WeatherClientImpl implements WeatherClient, AutoCloseable {
      * determine which cities to refresh during polling cycles.</p>
      */
     protected Set<String> getCachedCities() {
-        return responseCache.asMap().keySet();
+        return responseCache.keys().stream()
+            .filter(key -> key.language() == language && key.units() == units)
+            .map(CacheKey::city)
+            .collect(Collectors.toSet());
     }
 
     /**
@@ -194,7 +527,7 @@ public class WeatherClientImpl implements WeatherClient, AutoCloseable {
      *
      * <p><b>Cleanup steps:</b></p>
      * <ul>
-     *   <li>Invalidates cache if it's not shared</li>
+     *   <li>Invalidates cache if it's not shared, keeping entries of its disk tier</li>
      *   <li>Shuts down underlying API client</li>
      *   <li>Logs cleanup progress if logging enabled</li>
      * </ul>
@@ -209,7 +542,7 @@ public class WeatherClientImpl implements WeatherClient, AutoCloseable {
         }
 
         if (!isCacheShared) {
-            responseCache.invalidateAll();
+            responseCache.close();
             if (loggingEnabled) {
                 log.debug("WeatherClient cache is cleared.");
             }
@@ -0,0 +1,184 @@
+package ru.golubev.openweathersdk.internal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import lombok.experimental.UtilityClass;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.SupportedLanguage;
+import ru.golubev.openweathersdk.Units;
+import ru.golubev.openweathersdk.model.System;
+import ru.golubev.openweathersdk.model.Temperature;
+import ru.golubev.openweathersdk.model.Weather;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+import ru.golubev.openweathersdk.model.Wind;
+
+/**
+ * Compact binary encoding of cache keys and weather responses.
+ *
+ * <p>Used by cache tiers that keep responses outside the Java heap. The encoding
+ * stores primitives directly and writes optional fields only when present, which
+ * is several times smaller than the JSON returned by OpenWeather.</p>
+ *
+ * <p><b>Response layout:</b></p>
+ * <ol>
+ *   <li>{@code byte} - presence flags of optional fields</li>
+ *   <li>{@code byte} - absent nested objects and the {@code stale} flag (if flagged)</li>
+ *   <li>{@code UTF} - weather main and description (if present)</li>
+ *   <li>{@code double} - temperature and feels like (if present)</li>
+ *   <li>{@code int} - visibility (if present)</li>
+ *   <li>{@code double} - wind speed (if present)</li>
+ *   <li>{@code long} - datetime</li>
+ *   <li>{@code long} - sunrise and sunset (if present)</li>
+ *   <li>{@code int} - timezone</li>
+ *   <li>{@code UTF} - city name (if present)</li>
+ * </ol>
+ *
+ * @see DiskCacheTier
+ * @since 1.0
+ */
+@UtilityClass
+class WeatherResponseCodec {
+
+    private static final int HAS_MAIN = 1;
+    private static final int HAS_DESCRIPTION = 1 << 1;
+    private static final int HAS_VISIBILITY = 1 << 2;
+    private static final int HAS_WIND_SPEED = 1 << 3;
+    private static final int HAS_NAME = 1 << 4;
+    private static final int EXTENDED = 1 << 7;
+
+    // Extended flags mark absent fields, so records written without them decode as before
+    private static final int NO_WEATHER = 1;
+    private static final int NO_TEMPERATURE = 1 << 1;
+    private static final int NO_WIND = 1 << 2;
+    private static final int NO_SYS = 1 << 3;
+    private static final int STALE = 1 << 4;
+
+    private static final SupportedLanguage[] LANGUAGES = SupportedLanguage.values();
+    private static final Units[] UNITS = Units.values();
+
+    /**
+     * Writes a cache key.
+     *
+     * @param out the output to write to
+     * @param key the key to encode
+     * @throws IOException if writing fails
+     */
+    void writeKey(DataOutput out, CacheKey key) throws IOException {
+        out.writeUTF(key.city());
+        out.writeByte(key.language().ordinal());
+        out.writeByte(key.units().ordinal());
+    }
+
+    /**
+     * Reads an interned cache key.
+     *
+     * @param in the input to read from
+     * @return the decoded key
+     * @throws IOException if reading fails or the data is malformed
+     */
+    CacheKey readKey(DataInput in) throws IOException {
+        String city = in.readUTF();
+        int language = in.readUnsignedByte();
+        int units = in.readUnsignedByte();
+        if (language >= LANGUAGES.length || units >= UNITS.length) {
+            throw new IOException("Malformed cache key for city " + city);
+        }
+        return CacheKey.of(city, LANGUAGES[language], UNITS[units]);
+    }
+
+    /**
+     * Writes a weather response.
+     *
+     * @param out the output to write to
+     * @param response the response to encode
+     * @throws IOException if writing fails
+     */
+    void writeResponse(DataOutput out, WeatherResponse response) throws IOException {
+        Weather weather = response.getWeather();
+        Temperature temperature = response.getTemperature();
+        Double windSpeed = response.getWind() != null ? response.getWind().getSpeed() : null;
+        System sys = response.getSys();
+
+        int flags = EXTENDED;
+        flags |= weather != null && weather.getMain() != null ? HAS_MAIN : 0;
+        flags |= weather != null && weather.getDescription() != null ? HAS_DESCRIPTION : 0;
+        flags |= response.getVisibility() != null ? HAS_VISIBILITY : 0;
+        flags |= windSpeed != null ? HAS_WIND_SPEED : 0;
+        flags |= response.getName() != null ? HAS_NAME : 0;
+        out.writeByte(flags);
+
+        int extended = 0;
+        extended |= weather == null ? NO_WEATHER : 0;
+        extended |= temperature == null ? NO_TEMPERATURE : 0;
+        extended |= response.getWind() == null ? NO_WIND : 0;
+        extended |= sys == null ? NO_SYS : 0;
+        extended |= response.isStale() ? STALE : 0;
+        out.writeByte(extended);
+
+        if ((flags & HAS_MAIN) != 0) {
+            out.writeUTF(weather.getMain());
+        }
+        if ((flags & HAS_DESCRIPTION) != 0) {
+            out.writeUTF(weather.getDescription());
+        }
+        if (temperature != null) {
+            out.writeDouble(temperature.getTemp());
+            out.writeDouble(temperature.getFeels_like());
+        }
+        if (response.getVisibility() != null) {
+            out.writeInt(response.getVisibility());
+        }
+        if (windSpeed != null) {
+            out.writeDouble(windSpeed);
+        }
+        out.writeLong(response.getDatetime());
+        if (sys != null) {
+            out.writeLong(sys.getSunrise());
+            out.writeLong(sys.getSunset());
+        }
+        out.writeInt(response.getTimezone());
+        if (response.getName() != null) {
+            out.writeUTF(response.getName());
+        }
+    }
+
+    /**
+     * Reads a weather response.
+     *
+     * <p>Responses written before the extended flags were introduced are read with
+     * all nested objects present.</p>
+     *
+     * @param in the input to read from
+     * @return the decoded response
+     * @throws IOException if reading fails
+     */
+    WeatherResponse readResponse(DataInput in) throws IOException {
+        int flags = in.readUnsignedByte();
+        int extended = (flags & EXTENDED) != 0 ? in.readUnsignedByte() : 0;
+
+        String main = (flags & HAS_MAIN) != 0 ? in.readUTF() : null;
+        String description = (flags & HAS_DESCRIPTION) != 0 ? in.readUTF() : null;
+        Temperature temperature = (extended & NO_TEMPERATURE) == 0
+            ? new Temperature(in.readDouble(), in.readDouble())
+            : null;
+        Integer visibility = (flags & HAS_VISIBILITY) != 0 ? in.readInt() : null;
+        Double windSpeed = (flags & HAS_WIND_SPEED) != 0 ? in.readDouble() : null;
+        long datetime = in.readLong();
+        System sys = (extended & NO_SYS) == 0 ? new System(in.readLong(), in.readLong()) : null;
+        int timezone = in.readInt();
+        String name = (flags & HAS_NAME) != 0 ? in.readUTF() : null;
+
+        return new WeatherResponse(
+            (extended & NO_WEATHER) == 0 ? new Weather(main, description) : null,
+            temperature,
+            visibility,
+            (extended & NO_WIND) == 0 ? new Wind(windSpeed) : null,
+            datetime,
+            sys,
+            timezone,
+            name,
+            (extended & STALE) != 0
+        );
+    }
+}
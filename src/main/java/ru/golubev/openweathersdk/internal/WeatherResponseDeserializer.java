@@ -109,7 +109,7 @@ class WeatherResponseDeserializer extends JsonDeserializer<WeatherResponse> {
         // name
         String name = textOrNull(root, "name");
 
-        return new WeatherResponse(weather, temperature, visibility, wind, datetime, system, timezone, name);
+        return new WeatherResponse(weather, temperature, visibility, wind, datetime, system, timezone, name, false);
     }
 
     /**
@@ -0,0 +1,167 @@
+package ru.golubev.openweathersdk.internal;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+
+/**
+ * Change notifications of one response cache.
+ *
+ * <p>Holds one stream per subscribed key and {@link ChangeThreshold}. Every fresh
+ * response entering the cache is offered to the streams of its key, and each
+ * stream publishes it to all of its subscribers through a single
+ * {@link SubmissionPublisher} if it differs materially from the last published
+ * response. Subscribers therefore share the refreshes of the cache: thousands of
+ * subscribers of a city cost no more upstream calls than one.</p>
+ *
+ * <p><b>Characteristics:</b></p>
+ * <ul>
+ *   <li>Streams exist only while they have subscribers; cancelled subscribers are
+ *       dropped on the next publication of their key</li>
+ *   <li>The first response after a stream starts is always published</li>
+ *   <li>Publishing never blocks the refresh; a subscriber whose buffer is full
+ *       misses the response, and later responses reach it once it requests more</li>
+ *   <li>Subscribers are completed when the cache is closed</li>
+ * </ul>
+ *
+ * @see ResponseCache#changes
+ * @see WeatherClientImpl#subscribe
+ * @since 1.0
+ */
+final class WeatherUpdates implements AutoCloseable {
+
+    /**
+     * Publisher and last published response of one key and threshold.
+     *
+     * <p>The publisher is closed under the stream's lock, so a publication racing
+     * {@link #prune} or {@link #close()} is dropped rather than offered to a closed
+     * publisher, which would throw.</p>
+     */
+    private static final class ChangeStream {
+        private final ChangeThreshold threshold;
+        private final SubmissionPublisher<WeatherResponse> publisher;
+
+        // Guarded by this.
+        private WeatherResponse last;
+
+        private ChangeStream(ChangeThreshold threshold) {
+            this.threshold = threshold;
+            this.publisher = new SubmissionPublisher<>(ForkJoinPool.commonPool(), threshold.getBufferCapacity());
+        }
+
+        private synchronized void offer(WeatherResponse value) {
+            if (publisher.isClosed() || last != null && !threshold.isMaterialChange(last, value)) {
+                return;
+            }
+            last = value;
+            publisher.offer(value, (subscriber, dropped) -> false);
+        }
+
+        private synchronized void close() {
+            publisher.close();
+        }
+    }
+
+    private final ConcurrentMap<CacheKey, Map<ChangeThreshold, ChangeStream>> streams = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    /**
+     * Returns a publisher of the material changes of a key.
+     *
+     * <p>The stream is joined when a subscriber subscribes, so publishers that are
+     * never subscribed to cost nothing.</p>
+     *
+     * @param key the cache key
+     * @param threshold decides which responses are published
+     * @return publisher of changed responses
+     */
+    Flow.Publisher<WeatherResponse> publisher(CacheKey key, ChangeThreshold threshold) {
+        return subscriber -> subscribe(key, threshold, Objects.requireNonNull(subscriber, "subscriber must not be null"));
+    }
+
+    /**
+     * Offers a fresh response of a key to its subscribers.
+     *
+     * @param key the cache key the response was stored under
+     * @param value the fresh response
+     */
+    void publish(CacheKey key, WeatherResponse value) {
+        if (streams.isEmpty() || value.isStale()) {
+            return;
+        }
+        Map<ChangeThreshold, ChangeStream> byThreshold = streams.get(key);
+        if (byThreshold == null) {
+            return;
+        }
+        boolean abandoned = false;
+        for (ChangeStream stream : byThreshold.values()) {
+            stream.offer(value);
+            abandoned |= !stream.publisher.hasSubscribers();
+        }
+        if (abandoned) {
+            prune(key);
+        }
+    }
+
+    /**
+     * Returns the keys that have subscribers.
+     *
+     * @return live view of the subscribed keys
+     */
+    Set<CacheKey> subscribedKeys() {
+        return streams.keySet();
+    }
+
+    /**
+     * Completes all subscribers and rejects new ones, which are completed right away.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (CacheKey key : streams.keySet()) {
+            streams.computeIfPresent(key, (k, byThreshold) -> {
+                byThreshold.values().forEach(ChangeStream::close);
+                return null;
+            });
+        }
+    }
+
+    private void subscribe(CacheKey key, ChangeThreshold threshold, Flow.Subscriber<? super WeatherResponse> subscriber) {
+        // Subscribing inside compute keeps prune from closing a stream that is being joined
+        streams.compute(key, (k, byThreshold) -> {
+            if (closed) {
+                SubmissionPublisher<WeatherResponse> completed = new SubmissionPublisher<>();
+                completed.close();
+                completed.subscribe(subscriber);
+                return byThreshold;
+            }
+            Map<ChangeThreshold, ChangeStream> joined = byThreshold != null ? byThreshold : new ConcurrentHashMap<>();
+            joined.computeIfAbsent(threshold, ChangeStream::new).publisher.subscribe(subscriber);
+            return joined;
+        });
+    }
+
+    /**
+     * Closes the streams of a key that lost all their subscribers.
+     */
+    private void prune(CacheKey key) {
+        streams.computeIfPresent(key, (k, byThreshold) -> {
+            byThreshold.values().removeIf(stream -> {
+                if (stream.publisher.hasSubscribers()) {
+                    return false;
+                }
+                stream.close();
+                return true;
+            });
+            return byThreshold.isEmpty() ? null : byThreshold;
+        });
+    }
+}
@@ -1,6 +1,9 @@
 package ru.golubev.openweathersdk.model;
 
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Value;
+import lombok.With;
 
 /**
  * Comprehensive weather data response for a specific location.
@@ -23,6 +26,7 @@ import lombok.Value;
  * @since 1.0
  */
 @Value
+@AllArgsConstructor
 public class WeatherResponse {
     /**
      * Current weather conditions description.
@@ -128,4 +132,40 @@ public class WeatherResponse {
      * </ul>
      */
     String name;
+
+    /**
+     * Indicates that this is an expired copy served because the API call failed.
+     *
+     * <p>Set only on responses returned from the stale-if-error fallback when
+     * OpenWeather is unavailable or rate limiting. Fresh and cached responses
+     * always have this flag cleared.</p>
+     *
+     * <p>Not part of {@link #equals}: a stale copy equals the response it was made from.</p>
+     */
+    @With
+    @EqualsAndHashCode.Exclude
+    boolean stale;
+
+    /**
+     * Creates a fresh response.
+     *
+     * @param weather current weather conditions
+     * @param temperature temperature measurements
+     * @param visibility horizontal visibility in meters, or null
+     * @param wind wind measurements
+     * @param datetime time of data calculation, Unix UTC seconds
+     * @param sys sunrise and sunset times
+     * @param timezone shift from UTC in seconds
+     * @param name city name
+     */
+    public WeatherResponse(Weather weather,
+                           Temperature temperature,
+                           Integer visibility,
+                           Wind wind,
+                           long datetime,
+                           System sys,
+                           int timezone,
+                           String name) {
+        this(weather, temperature, visibility, wind, datetime, sys, timezone, name, false);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,161 @@
+package ru.golubev.openweathersdk.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.SupportedLanguage;
+import ru.golubev.openweathersdk.Units;
+import ru.golubev.openweathersdk.model.System;
+import ru.golubev.openweathersdk.model.Temperature;
+import ru.golubev.openweathersdk.model.Weather;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+import ru.golubev.openweathersdk.model.Wind;
+
+class DiskCacheTierTest {
+
+    private static final Duration TTL = Duration.ofHours(1);
+
+    @TempDir
+    Path directory;
+
+    private DiskCacheTier tier;
+
+    @BeforeEach
+    void open() throws IOException {
+        tier = new DiskCacheTier(directory, TTL);
+    }
+
+    @AfterEach
+    void close() {
+        tier.close();
+    }
+
+    @Test
+    void takeReturnsSpilledResponseOnce() {
+        tier.put(key("London"), response("London"), 60_000);
+
+        DiskCacheTier.Entry entry = tier.take(key("London"));
+
+        assertNotNull(entry);
+        assertEquals(response("London"), entry.getValue());
+        assertNull(tier.take(key("London")));
+    }
+
+    @Test
+    void absentFieldsStayAbsent() {
+        WeatherResponse sparse = new WeatherResponse(null, null, null, null, 1_700_000_000L, null, 0, "London");
+        tier.put(key("London"), sparse, 60_000);
+
+        DiskCacheTier.Entry entry = tier.take(key("London"));
+
+        assertNotNull(entry);
+        assertEquals(sparse, entry.getValue());
+        assertNull(entry.getValue().getWeather());
+        assertNull(entry.getValue().getSys());
+    }
+
+    @Test
+    void spilledResponseKeepsItsRemainingLifetime() {
+        long before = java.lang.System.currentTimeMillis();
+        tier.put(key("London"), response("London"), 60_000);
+
+        DiskCacheTier.Entry entry = tier.take(key("London"));
+
+        assertNotNull(entry);
+        assertTrue(entry.getExpiresAt() >= before + 60_000);
+        assertTrue(entry.getExpiresAt() <= java.lang.System.currentTimeMillis() + 60_000);
+    }
+
+    @Test
+    void lifetimeIsCappedByTtl() {
+        tier.put(key("London"), response("London"), TTL.toMillis() * 10);
+
+        DiskCacheTier.Entry entry = tier.take(key("London"));
+
+        assertNotNull(entry);
+        assertTrue(entry.getExpiresAt() <= java.lang.System.currentTimeMillis() + TTL.toMillis());
+    }
+
+    @Test
+    void expiredResponseIsNotReturned() throws InterruptedException {
+        tier.put(key("London"), response("London"), 20);
+        Thread.sleep(50);
+
+        assertNull(tier.take(key("London")));
+    }
+
+    @Test
+    void responseWithoutLifetimeIsNotStored() {
+        tier.put(key("London"), response("London"), 0);
+
+        assertNull(tier.take(key("London")));
+    }
+
+    @Test
+    void compactionKeepsLiveResponses() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            tier.put(key("city" + i), response("city" + i), 60_000);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            assertNotNull(tier.take(key("city" + i)));
+        }
+        long sizeBefore = segmentSize();
+
+        tier.compact();
+
+        assertTrue(segmentSize() < sizeBefore);
+        for (int i = 0; i < 100; i++) {
+            DiskCacheTier.Entry entry = tier.take(key("city" + i));
+            if (i % 2 == 0) {
+                assertNull(entry);
+            } else {
+                assertNotNull(entry);
+                assertEquals(response("city" + i), entry.getValue());
+            }
+        }
+    }
+
+    @Test
+    void responsesSurviveReopening() throws IOException {
+        tier.put(key("London"), response("London"), 60_000);
+        tier.compact();
+        tier.close();
+
+        tier = new DiskCacheTier(directory, TTL);
+
+        DiskCacheTier.Entry entry = tier.take(key("London"));
+        assertNotNull(entry);
+        assertEquals(response("London"), entry.getValue());
+    }
+
+    private long segmentSize() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            long total = 0;
+            for (Path file : (Iterable<Path>) files.filter(f -> f.toString().endsWith(".dat"))::iterator) {
+                total += Files.size(file);
+            }
+            return total;
+        }
+    }
+
+    private static CacheKey key(String city) {
+        return CacheKey.of(city, SupportedLanguage.ENGLISH, Units.METRIC);
+    }
+
+    private static WeatherResponse response(String city) {
+        return new WeatherResponse(new Weather("Clouds", "overcast clouds"), new Temperature(12.5, 11.0), 10_000,
+            new Wind(4.1), 1_700_000_000L, new System(1_699_990_000L, 1_700_020_000L), 0, city, false);
+    }
+}
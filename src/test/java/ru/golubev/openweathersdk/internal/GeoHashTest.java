@@ -0,0 +1,78 @@
+package ru.golubev.openweathersdk.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class GeoHashTest {
+
+    @Test
+    void knownCoordinatesEncodeToKnownHashes() {
+        assertEquals("u4pruydqqvj", GeoHash.encode(57.64911, 10.40744, 11));
+        assertEquals("ezs42", GeoHash.encode(42.6, -5.6, 5));
+    }
+
+    @Test
+    void shorterPrecisionIsPrefixOfLonger() {
+        String full = GeoHash.encode(57.64911, 10.40744, GeoHash.MAX_PRECISION);
+
+        for (int precision = 1; precision <= GeoHash.MAX_PRECISION; precision++) {
+            assertEquals(full.substring(0, precision), GeoHash.encode(57.64911, 10.40744, precision));
+        }
+        assertEquals("u", GeoHash.encode(57.64911, 10.40744, 1));
+    }
+
+    @Test
+    void centerRoundTripsToSameCell() {
+        double[][] points = {{57.64911, 10.40744}, {-33.8688, 151.2093}, {0, 0}, {-89.9, -179.9}, {89.9, 179.9}};
+        for (double[] point : points) {
+            for (int precision = 1; precision <= GeoHash.MAX_PRECISION; precision++) {
+                String hash = GeoHash.encode(point[0], point[1], precision);
+                double[] center = GeoHash.decodeCenter(hash);
+
+                assertEquals(hash, GeoHash.encode(center[0], center[1], precision));
+                // A cell of n characters spans 5n bits, split between longitude and latitude
+                int lonBits = (5 * precision + 1) / 2;
+                int latBits = 5 * precision / 2;
+                assertEquals(point[0], center[0], 90 / Math.pow(2, latBits));
+                assertEquals(point[1], center[1], 180 / Math.pow(2, lonBits));
+            }
+        }
+    }
+
+    @Test
+    void boundaryCoordinatesFallIntoCornerCells() {
+        assertEquals("0", GeoHash.encode(-90, -180, 1));
+        assertEquals("z", GeoHash.encode(90, 180, 1));
+        assertEquals("000000000000", GeoHash.encode(-90, -180, GeoHash.MAX_PRECISION));
+        assertEquals("zzzzzzzzzzzz", GeoHash.encode(90, 180, GeoHash.MAX_PRECISION));
+        assertEquals("b", GeoHash.encode(90, -180, 1));
+        assertEquals("p", GeoHash.encode(-90, 180, 1));
+    }
+
+    @Test
+    void invalidInputIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> GeoHash.encode(90.1, 0, 5));
+        assertThrows(IllegalArgumentException.class, () -> GeoHash.encode(0, -180.1, 5));
+        assertThrows(IllegalArgumentException.class, () -> GeoHash.encode(Double.NaN, 0, 5));
+        assertThrows(IllegalArgumentException.class, () -> GeoHash.encode(0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> GeoHash.encode(0, 0, GeoHash.MAX_PRECISION + 1));
+        assertThrows(IllegalArgumentException.class, () -> GeoHash.decodeCenter(""));
+        assertThrows(IllegalArgumentException.class, () -> GeoHash.decodeCenter("u4pa"));
+        assertThrows(IllegalArgumentException.class, () -> GeoHash.decodeCenter("u4pruydqqvjzz"));
+    }
+
+    @Test
+    void cellKeysAreMarked() {
+        String key = GeoHash.cellKey(57.64911, 10.40744, 5);
+
+        assertEquals(GeoHash.CELL_PREFIX + "u4pru", key);
+        assertTrue(GeoHash.isCellKey(key));
+        assertFalse(GeoHash.isCellKey("London"));
+        assertEquals(GeoHash.decodeCenter("u4pru")[0], GeoHash.cellCenter(key)[0]);
+        assertEquals(GeoHash.decodeCenter("u4pru")[1], GeoHash.cellCenter(key)[1]);
+    }
+}
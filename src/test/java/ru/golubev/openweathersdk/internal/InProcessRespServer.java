@@ -0,0 +1,353 @@
+package ru.golubev.openweathersdk.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Minimal in-process server speaking the Redis protocol, for tests of the remote
+ * cache tier.
+ *
+ * <p>Keeps values in a concurrent map and serves each connection on its own
+ * daemon thread. Records every command it receives and can delay its replies or
+ * drop its connections, so batching, timeouts and reconnects of
+ * {@link RemoteCacheTier} can be observed without external infrastructure.</p>
+ *
+ * <p><b>Supported commands:</b></p>
+ * <ul>
+ *   <li>{@code PING}</li>
+ *   <li>{@code GET key}, {@code MGET key [key ...]}</li>
+ *   <li>{@code SET key value [PX milliseconds | EX seconds]}</li>
+ *   <li>{@code DEL key [key ...]}</li>
+ *   <li>{@code DBSIZE}, {@code FLUSHALL}</li>
+ * </ul>
+ *
+ * @see RemoteCacheTier
+ * @since 1.0
+ */
+@Slf4j
+final class InProcessRespServer implements AutoCloseable {
+
+    /**
+     * Stored value with its expiration time.
+     */
+    @RequiredArgsConstructor
+    private static final class Entry {
+        private final byte[] value;
+        private final long expiresAtMillis;
+
+        boolean isExpired(long now) {
+            return expiresAtMillis > 0 && expiresAtMillis <= now;
+        }
+    }
+
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final Queue<List<String>> received = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger accepted = new AtomicInteger();
+
+    /**
+     * Values by key. Keys are decoded as ISO-8859-1, which maps every byte to one char.
+     */
+    private final ConcurrentMap<String, Entry> data = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+    private volatile long replyDelayMillis;
+
+    private InProcessRespServer(ServerSocket serverSocket) {
+        this.serverSocket = serverSocket;
+        this.acceptor = new Thread(this::accept, "openweather-resp-server");
+        this.acceptor.setDaemon(true);
+    }
+
+    /**
+     * Starts a server on an ephemeral port of the loopback interface.
+     *
+     * @return the running server
+     * @throws IOException if the port cannot be bound
+     */
+    static InProcessRespServer start() throws IOException {
+        return start(0);
+    }
+
+    /**
+     * Starts a server on the given port of the loopback interface.
+     *
+     * @param port the port, or 0 for an ephemeral port
+     * @return the running server
+     * @throws IOException if the port cannot be bound
+     */
+    static InProcessRespServer start(int port) throws IOException {
+        ServerSocket socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        InProcessRespServer server = new InProcessRespServer(socket);
+        server.acceptor.start();
+        return server;
+    }
+
+    /**
+     * Returns the address clients connect to.
+     *
+     * @return loopback address and bound port
+     */
+    InetSocketAddress address() {
+        return new InetSocketAddress(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+    }
+
+    /**
+     * Returns the number of stored keys, including expired keys not yet removed.
+     *
+     * @return number of keys
+     */
+    int size() {
+        return data.size();
+    }
+
+    /**
+     * Returns the commands received so far, each as its name and arguments.
+     *
+     * @return received commands in arrival order per connection
+     */
+    List<List<String>> commands() {
+        return new ArrayList<>(received);
+    }
+
+    /**
+     * Returns the number of connections accepted so far.
+     *
+     * @return number of accepted connections
+     */
+    int acceptedConnections() {
+        return accepted.get();
+    }
+
+    /**
+     * Delays the execution of every following command.
+     *
+     * @param delay the delay, or zero to reply immediately
+     */
+    void delayReplies(Duration delay) {
+        replyDelayMillis = delay.toMillis();
+    }
+
+    /**
+     * Closes all open connections while keeping the server running.
+     */
+    void dropConnections() {
+        for (Socket connection : connections) {
+            try {
+                connection.close();
+            } catch (IOException ignored) {
+                // best effort
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections and closes all open ones.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+            // best effort
+        }
+        dropConnections();
+        data.clear();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                accepted.incrementAndGet();
+                Thread handler = new Thread(() -> serve(socket), "openweather-resp-connection");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    log.warn("RESP server failed to accept a connection", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             InputStream in = new BufferedInputStream(s.getInputStream());
+             OutputStream out = new BufferedOutputStream(s.getOutputStream())) {
+            while (!closed) {
+                Object command = Resp.read(in);
+                record(command);
+                long delay = replyDelayMillis;
+                if (delay > 0) {
+                    out.flush();
+                    Thread.sleep(delay);
+                }
+                execute(command, out);
+                // Replies to pipelined commands are flushed together
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // client disconnected or server closed
+        } catch (IOException e) {
+            log.debug("RESP server connection failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    private void record(Object command) {
+        if (command instanceof List) {
+            List<String> args = new ArrayList<>();
+            for (Object arg : (List<?>) command) {
+                args.add(arg instanceof byte[] ? key(arg) : String.valueOf(arg));
+            }
+            received.add(args);
+        }
+    }
+
+    private void execute(Object command, OutputStream out) throws IOException {
+        if (!(command instanceof List) || ((List<?>) command).isEmpty()) {
+            Resp.writeError(out, "ERR expected a command array");
+            return;
+        }
+        List<?> args = (List<?>) command;
+        for (Object arg : args) {
+            if (!(arg instanceof byte[])) {
+                Resp.writeError(out, "ERR expected bulk string arguments");
+                return;
+            }
+        }
+
+        String name = text(args.get(0)).toUpperCase(Locale.ROOT);
+        long now = System.currentTimeMillis();
+        switch (name) {
+            case "PING":
+                Resp.writeSimple(out, "PONG");
+                break;
+            case "GET":
+                if (args.size() != 2) {
+                    wrongArity(out, name);
+                    break;
+                }
+                Resp.writeBulk(out, lookup(key(args.get(1)), now));
+                break;
+            case "MGET":
+                if (args.size() < 2) {
+                    wrongArity(out, name);
+                    break;
+                }
+                Resp.writeArrayHeader(out, args.size() - 1);
+                for (int i = 1; i < args.size(); i++) {
+                    Resp.writeBulk(out, lookup(key(args.get(i)), now));
+                }
+                break;
+            case "SET":
+                set(args, now, out);
+                break;
+            case "DEL": {
+                if (args.size() < 2) {
+                    wrongArity(out, name);
+                    break;
+                }
+                long removed = 0;
+                for (int i = 1; i < args.size(); i++) {
+                    Entry entry = data.remove(key(args.get(i)));
+                    if (entry != null && !entry.isExpired(now)) {
+                        removed++;
+                    }
+                }
+                Resp.writeInteger(out, removed);
+                break;
+            }
+            case "DBSIZE":
+                Resp.writeInteger(out, data.size());
+                break;
+            case "FLUSHALL":
+                data.clear();
+                Resp.writeSimple(out, "OK");
+                break;
+            default:
+                Resp.writeError(out, "ERR unknown command '" + name + "'");
+        }
+    }
+
+    private void set(List<?> args, long now, OutputStream out) throws IOException {
+        if (args.size() != 3 && args.size() != 5) {
+            wrongArity(out, "SET");
+            return;
+        }
+        long expiresAt = 0;
+        if (args.size() == 5) {
+            String unit = text(args.get(3)).toUpperCase(Locale.ROOT);
+            long amount;
+            try {
+                amount = Long.parseLong(text(args.get(4)));
+            } catch (NumberFormatException e) {
+                Resp.writeError(out, "ERR value is not an integer or out of range");
+                return;
+            }
+            if (amount <= 0 || (!unit.equals("PX") && !unit.equals("EX"))) {
+                Resp.writeError(out, "ERR syntax error");
+                return;
+            }
+            expiresAt = now + (unit.equals("PX") ? amount : amount * 1000);
+        }
+        data.put(key(args.get(1)), new Entry((byte[]) args.get(2), expiresAt));
+        Resp.writeSimple(out, "OK");
+    }
+
+    private byte[] lookup(String key, long now) {
+        Entry entry = data.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(now)) {
+            data.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    private static void wrongArity(OutputStream out, String name) throws IOException {
+        Resp.writeError(out, "ERR wrong number of arguments for '" + name.toLowerCase(Locale.ROOT) + "' command");
+    }
+
+    private static String key(Object arg) {
+        return new String((byte[]) arg, StandardCharsets.ISO_8859_1);
+    }
+
+    private static String text(Object arg) {
+        return new String((byte[]) arg, StandardCharsets.UTF_8);
+    }
+}
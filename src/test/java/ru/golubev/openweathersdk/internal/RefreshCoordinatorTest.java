@@ -0,0 +1,328 @@
+package ru.golubev.openweathersdk.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.PollingCycleReport;
+import ru.golubev.openweathersdk.SupportedLanguage;
+import ru.golubev.openweathersdk.Units;
+import ru.golubev.openweathersdk.WeatherSdkConfigurer.CacheConfigurer;
+import ru.golubev.openweathersdk.WeatherSdkConfigurer.UpdateMode;
+import ru.golubev.openweathersdk.exception.InternalApiException;
+import ru.golubev.openweathersdk.model.System;
+import ru.golubev.openweathersdk.model.Temperature;
+import ru.golubev.openweathersdk.model.Weather;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+import ru.golubev.openweathersdk.model.Wind;
+
+class RefreshCoordinatorTest {
+
+    private static final Duration INTERVAL = Duration.ofMinutes(1);
+
+    private ManualScheduler timer;
+    private ResponseCache cache;
+    private RefreshCoordinator coordinator;
+    private List<PollingCycleReport> reports;
+
+    @BeforeEach
+    void create() {
+        timer = new ManualScheduler();
+        cache = CacheFactory.create(new CacheConfigurer().maxSize(100),
+            (key, executor) -> CompletableFuture.completedFuture(response(key.city())), UpdateMode.POLLING);
+        coordinator = new RefreshCoordinator(cache, timer);
+        reports = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @AfterEach
+    void close() {
+        cache.close();
+    }
+
+    @Test
+    void billInterleavesClientsByBudget() {
+        RefreshCoordinator.Registration small = registration(1);
+        RefreshCoordinator.Registration large = registration(3);
+
+        List<RefreshCoordinator.Registration> bill = RefreshCoordinator.bill(List.of(small, large), 4);
+
+        assertEquals(List.of(large, small, large, large), bill);
+    }
+
+    @Test
+    void billCapsClientsAtTheirBudget() {
+        RefreshCoordinator.Registration limited = registration(2);
+        RefreshCoordinator.Registration unlimited = registration(0);
+
+        List<RefreshCoordinator.Registration> bill = RefreshCoordinator.bill(List.of(limited, unlimited), 10);
+
+        assertEquals(2, Collections.frequency(bill, limited));
+        assertEquals(8, Collections.frequency(bill, unlimited));
+    }
+
+    @Test
+    void failingKeyBacksOffExponentially() {
+        CacheKey key = cached("London");
+        List<Long> reloadCycles = new ArrayList<>();
+        long[] cycle = {0};
+        AtomicInteger calls = new AtomicInteger();
+        coordinator.register(this, k -> {
+            reloadCycles.add(cycle[0]);
+            // The fifth reload succeeds and resets the backoff
+            return calls.incrementAndGet() == 5 ? CompletableFuture.completedFuture(response(k.city())) : failure();
+        }, INTERVAL, 0, 1, reports::add, false);
+
+        for (cycle[0] = 1; cycle[0] <= 32; cycle[0]++) {
+            cache.recordAccess(key);
+            timer.runInterval();
+        }
+
+        assertEquals(List.of(1L, 3L, 7L, 15L, 31L, 32L), reloadCycles);
+        assertEquals(0, reports.get(1).getScheduled());
+        assertEquals(1, reports.get(1).getBackedOff());
+    }
+
+    @Test
+    void keyStillReloadingIsSkipped() {
+        CacheKey key = cached("London");
+        List<CompletableFuture<WeatherResponse>> reloads = new ArrayList<>();
+        coordinator.register(this, k -> {
+            CompletableFuture<WeatherResponse> reload = new CompletableFuture<>();
+            reloads.add(reload);
+            return reload;
+        }, INTERVAL, 0, 1, reports::add, false);
+
+        cache.recordAccess(key);
+        timer.runInterval();
+        cache.recordAccess(key);
+        timer.runInterval();
+
+        assertEquals(1, reloads.size());
+        assertEquals(1, reports.size());
+        assertEquals(1, reports.get(0).getSkipped());
+
+        reloads.get(0).complete(response("London"));
+
+        assertEquals(2, reports.size());
+        assertEquals(1, reports.get(1).getSucceeded());
+    }
+
+    @Test
+    void runningReloadsStayWithinConcurrency() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            cache.recordAccess(cached("city" + i));
+        }
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        List<CompletableFuture<WeatherResponse>> reloads = Collections.synchronizedList(new ArrayList<>());
+        coordinator.register(this, k -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            CompletableFuture<WeatherResponse> reload = new CompletableFuture<>();
+            reloads.add(reload);
+            return reload.whenComplete((value, error) -> active.decrementAndGet());
+        }, INTERVAL, 0, 3, reports::add, false);
+
+        timer.runInterval();
+        assertEquals(3, reloads.size());
+
+        // Completions on several threads race to start the queued reloads
+        while (reports.isEmpty()) {
+            List<CompletableFuture<WeatherResponse>> pending;
+            synchronized (reloads) {
+                pending = new ArrayList<>(reloads);
+            }
+            List<Thread> threads = new ArrayList<>();
+            for (CompletableFuture<WeatherResponse> reload : pending) {
+                threads.add(new Thread(() -> reload.complete(response("city"))));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        assertEquals(20, reloads.size());
+        assertEquals(3, maxActive.get());
+        assertEquals(20, reports.get(0).getSucceeded());
+    }
+
+    @Test
+    void reloadsOfLeavingClientGoToClientsWithBudgetLeft() {
+        for (int i = 0; i < 4; i++) {
+            cache.recordAccess(cached("city" + i));
+        }
+        Object leaving = new Object();
+        Object staying = new Object();
+        AtomicInteger leavingCalls = new AtomicInteger();
+        AtomicInteger stayingCalls = new AtomicInteger();
+        coordinator.register(leaving, counting(leavingCalls), INTERVAL, 2, 1, null, false);
+        coordinator.register(staying, counting(stayingCalls), INTERVAL, 2, 1, reports::add, false);
+
+        timer.runCycleOnly();
+        coordinator.unregister(leaving);
+        timer.runReloads();
+
+        assertEquals(0, leavingCalls.get());
+        assertEquals(2, stayingCalls.get());
+        assertEquals(2, reports.get(0).getSucceeded());
+        assertEquals(2, reports.get(0).getSkipped());
+    }
+
+    @Test
+    void reloadOfLeavingClientIsPaidFromUnusedBudget() {
+        for (int i = 0; i < 2; i++) {
+            cache.recordAccess(cached("city" + i));
+        }
+        Object leaving = new Object();
+        Object staying = new Object();
+        AtomicInteger stayingCalls = new AtomicInteger();
+        coordinator.register(leaving, counting(new AtomicInteger()), INTERVAL, 2, 1, null, false);
+        coordinator.register(staying, counting(stayingCalls), INTERVAL, 2, 1, reports::add, false);
+
+        timer.runCycleOnly();
+        coordinator.unregister(leaving);
+        timer.runReloads();
+
+        assertEquals(2, stayingCalls.get());
+        assertEquals(2, reports.get(0).getSucceeded());
+    }
+
+    @Test
+    void durationSpansReloadsRatherThanCycle() throws Exception {
+        cache.recordAccess(cached("London"));
+        CompletableFuture<WeatherResponse> reload = new CompletableFuture<>();
+        coordinator.register(this, k -> reload, INTERVAL, 0, 1, reports::add, false);
+
+        // The reload is due well after the cycle starts and takes a while itself
+        timer.runCycleOnly();
+        Thread.sleep(300);
+        timer.runReloads();
+        Thread.sleep(100);
+        reload.complete(response("London"));
+
+        Duration duration = reports.get(0).getDuration();
+        assertTrue(duration.compareTo(Duration.ofMillis(100)) >= 0, () -> "duration " + duration);
+        assertTrue(duration.compareTo(Duration.ofMillis(300)) < 0, () -> "duration " + duration);
+    }
+
+    @Test
+    void cycleWithoutReloadsLastsNoTime() {
+        coordinator.register(this, k -> CompletableFuture.completedFuture(response(k.city())), INTERVAL, 0, 1,
+            reports::add, false);
+
+        timer.runInterval();
+
+        assertEquals(Duration.ZERO, reports.get(0).getDuration());
+    }
+
+    private CacheKey cached(String city) {
+        CacheKey key = CacheKey.of(city, SupportedLanguage.ENGLISH, Units.METRIC);
+        cache.get(key, k -> CompletableFuture.completedFuture(response(city))).join();
+        return key;
+    }
+
+    private static RefreshCoordinator.Registration registration(int budget) {
+        return new RefreshCoordinator.Registration(new Object(), null, INTERVAL.toMillis(), budget, 1, null, false);
+    }
+
+    private static Function<CacheKey, CompletableFuture<WeatherResponse>> counting(AtomicInteger calls) {
+        return key -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(response(key.city()));
+        };
+    }
+
+    private static CompletableFuture<WeatherResponse> failure() {
+        CompletableFuture<WeatherResponse> future = new CompletableFuture<>();
+        future.completeExceptionally(new InternalApiException(503, "Service Unavailable", "outage"));
+        return future;
+    }
+
+    private static WeatherResponse response(String city) {
+        return new WeatherResponse(new Weather("Clouds", "overcast clouds"), new Temperature(12.5, 11.0), 10_000,
+            new Wind(4.1), 1_700_000_000L, new System(1_699_990_000L, 1_700_020_000L), 0, city, false);
+    }
+
+    /**
+     * Scheduler whose tasks run only when the test advances it.
+     */
+    private static final class ManualScheduler implements RefreshCoordinator.Scheduler {
+
+        private final List<Task> pending = new ArrayList<>();
+
+        @Override
+        public synchronized TimingWheel.Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+            TimingWheel.Timeout timeout = new TimingWheel.Timeout(task, unit.toMillis(delay));
+            pending.add(new Task(timeout, task, unit.toMillis(delay)));
+            return timeout;
+        }
+
+        /**
+         * Runs the pending cycle and then the reloads it schedules.
+         */
+        void runInterval() {
+            runCycleOnly();
+            runReloads();
+        }
+
+        /**
+         * Runs the pending cycle, leaving the reloads it schedules pending.
+         */
+        void runCycleOnly() {
+            run(task -> task.delayMillis >= INTERVAL.toMillis());
+        }
+
+        /**
+         * Runs the pending reloads in order of their phases. Cycles are scheduled a
+         * whole interval ahead, reloads within it.
+         */
+        void runReloads() {
+            run(task -> task.delayMillis < INTERVAL.toMillis());
+        }
+
+        private void run(Predicate<Task> filter) {
+            List<Task> due = new ArrayList<>();
+            synchronized (this) {
+                for (Iterator<Task> iterator = pending.iterator(); iterator.hasNext(); ) {
+                    Task task = iterator.next();
+                    if (filter.test(task)) {
+                        due.add(task);
+                        iterator.remove();
+                    }
+                }
+            }
+            due.sort(Comparator.comparingLong(task -> task.delayMillis));
+            for (Task task : due) {
+                if (!task.timeout.isCancelled()) {
+                    task.runnable.run();
+                }
+            }
+        }
+
+        private static final class Task {
+            private final TimingWheel.Timeout timeout;
+            private final Runnable runnable;
+            private final long delayMillis;
+
+            private Task(TimingWheel.Timeout timeout, Runnable runnable, long delayMillis) {
+                this.timeout = timeout;
+                this.runnable = runnable;
+                this.delayMillis = delayMillis;
+            }
+        }
+    }
+}
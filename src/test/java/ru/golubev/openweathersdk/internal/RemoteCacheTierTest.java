@@ -0,0 +1,193 @@
+package ru.golubev.openweathersdk.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.SupportedLanguage;
+import ru.golubev.openweathersdk.Units;
+import ru.golubev.openweathersdk.model.System;
+import ru.golubev.openweathersdk.model.Temperature;
+import ru.golubev.openweathersdk.model.Weather;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+import ru.golubev.openweathersdk.model.Wind;
+
+class RemoteCacheTierTest {
+
+    private static final Duration TTL = Duration.ofMinutes(10);
+    private static final Duration LIFETIME = Duration.ofMinutes(5);
+    private static final Duration TIMEOUT = Duration.ofMillis(200);
+
+    private InProcessRespServer server;
+    private RemoteCacheTier tier;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = InProcessRespServer.start();
+        tier = new RemoteCacheTier(server.address(), "test:", TTL, LIFETIME, TIMEOUT);
+    }
+
+    @AfterEach
+    void stop() {
+        tier.close();
+        server.close();
+    }
+
+    @Test
+    void storedResponseIsReturned() throws Exception {
+        tier.put(key("London"), response("London"));
+        awaitSize(1);
+
+        assertEquals(response("London"), get("London"));
+        assertNull(get("Paris"));
+    }
+
+    @Test
+    void localLifetimeCountsFromLoad() throws Exception {
+        long before = java.lang.System.currentTimeMillis();
+        tier.put(key("London"), response("London"));
+        long after = java.lang.System.currentTimeMillis();
+        awaitSize(1);
+        Thread.sleep(50);
+
+        RemoteCacheTier.Entry entry = tier.get(key("London")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(response("London"), entry.getValue());
+        assertTrue(entry.getExpiresAt() >= before + LIFETIME.toMillis());
+        assertTrue(entry.getExpiresAt() <= after + LIFETIME.toMillis());
+    }
+
+    @Test
+    void concurrentLookupsAreBatchedIntoMget() throws Exception {
+        int lookups = 1000;
+        for (int i = 0; i < lookups; i++) {
+            tier.put(key("city" + i), response("city" + i));
+        }
+        awaitSize(lookups);
+
+        List<CompletableFuture<RemoteCacheTier.Entry>> results = new ArrayList<>();
+        for (int i = 0; i < lookups; i++) {
+            results.add(tier.get(key("city" + i)));
+        }
+        for (int i = 0; i < lookups; i++) {
+            assertEquals(response("city" + i), results.get(i).get(5, TimeUnit.SECONDS).getValue());
+        }
+
+        List<List<String>> mgets = commands("MGET");
+        int keys = mgets.stream().mapToInt(command -> command.size() - 1).sum();
+        assertEquals(lookups, keys);
+        assertTrue(mgets.size() < lookups, "lookups were sent one by one");
+        assertTrue(mgets.stream().allMatch(command -> command.size() - 1 <= 256));
+        assertTrue(commands("GET").isEmpty());
+    }
+
+    @Test
+    void pipelinedRepliesCompleteTheirOwnLookups() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            tier.put(key("city" + i), response("city" + i));
+        }
+        awaitSize(50);
+
+        // Writes interleaved with lookups put SET replies between MGET replies
+        List<CompletableFuture<RemoteCacheTier.Entry>> results = new ArrayList<>();
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 50; i++) {
+                results.add(tier.get(key("city" + i)));
+                tier.put(key("other" + i), response("other" + i));
+                results.add(tier.get(key("missing" + i)));
+            }
+        }
+
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 50; i++) {
+                int index = (round * 50 + i) * 2;
+                assertEquals(response("city" + i), results.get(index).get(5, TimeUnit.SECONDS).getValue());
+                assertNull(results.get(index + 1).get(5, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    void slowServerCountsAsMiss() throws Exception {
+        tier.put(key("London"), response("London"));
+        awaitSize(1);
+        server.delayReplies(TIMEOUT.multipliedBy(5));
+
+        long start = java.lang.System.nanoTime();
+        WeatherResponse result = get("London");
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(java.lang.System.nanoTime() - start);
+
+        assertNull(result);
+        assertTrue(elapsedMillis < TIMEOUT.multipliedBy(4).toMillis(), "lookup waited for the server");
+    }
+
+    @Test
+    void reconnectsAfterConnectionLoss() throws Exception {
+        tier.put(key("London"), response("London"));
+        awaitSize(1);
+        assertEquals(1, server.acceptedConnections());
+
+        server.dropConnections();
+
+        // Lookups while the connection is down are misses, never errors
+        WeatherResponse result = null;
+        long deadline = java.lang.System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (result == null && java.lang.System.nanoTime() < deadline) {
+            result = get("London");
+        }
+        assertEquals(response("London"), result);
+        assertEquals(2, server.acceptedConnections());
+    }
+
+    @Test
+    void closedTierAnswersMisses() throws Exception {
+        tier.put(key("London"), response("London"));
+        awaitSize(1);
+
+        tier.close();
+
+        assertNull(get("London"));
+    }
+
+    private WeatherResponse get(String city) throws Exception {
+        RemoteCacheTier.Entry entry = tier.get(key(city)).get(5, TimeUnit.SECONDS);
+        return entry != null ? entry.getValue() : null;
+    }
+
+    private List<List<String>> commands(String name) {
+        List<List<String>> matching = new ArrayList<>();
+        for (List<String> command : server.commands()) {
+            if (command.get(0).equals(name)) {
+                matching.add(command);
+            }
+        }
+        return matching;
+    }
+
+    private void awaitSize(int size) throws InterruptedException {
+        long deadline = java.lang.System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.size() < size && java.lang.System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(size, server.size());
+    }
+
+    private static CacheKey key(String city) {
+        return CacheKey.of(city, SupportedLanguage.ENGLISH, Units.METRIC);
+    }
+
+    private static WeatherResponse response(String city) {
+        return new WeatherResponse(new Weather("Clouds", "overcast clouds"), new Temperature(12.5, 11.0), 10_000,
+            new Wind(4.1), 1_700_000_000L, new System(1_699_990_000L, 1_700_020_000L), 0, city, false);
+    }
+}
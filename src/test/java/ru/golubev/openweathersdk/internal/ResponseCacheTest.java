@@ -0,0 +1,104 @@
+package ru.golubev.openweathersdk.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.SupportedLanguage;
+import ru.golubev.openweathersdk.Units;
+import ru.golubev.openweathersdk.WeatherSdkConfigurer.CacheConfigurer;
+import ru.golubev.openweathersdk.exception.InternalApiException;
+import ru.golubev.openweathersdk.model.System;
+import ru.golubev.openweathersdk.model.Temperature;
+import ru.golubev.openweathersdk.model.Weather;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+import ru.golubev.openweathersdk.model.Wind;
+
+class ResponseCacheTest {
+
+    private static final Duration TTL = Duration.ofMillis(100);
+    private static final Duration STALE_WINDOW = Duration.ofMillis(300);
+
+    private static final CacheKey KEY = CacheKey.of("London", SupportedLanguage.ENGLISH, Units.METRIC);
+
+    private ResponseCache cache;
+
+    @AfterEach
+    void close() {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    @Test
+    void staleFallbackIsNotRevalidatedDuringItsCooldown() throws Exception {
+        cache = CacheFactory.createShared(new CacheConfigurer()
+            .ttl(TTL)
+            .staleWhileRevalidate(STALE_WINDOW)
+            .staleIfError(Duration.ofMinutes(1)));
+        cache.get(KEY, key -> CompletableFuture.completedFuture(response())).get(5, TimeUnit.SECONDS);
+
+        // The expired entry moves to the grace area and the failed load serves it as stale
+        Thread.sleep(TTL.plus(STALE_WINDOW).toMillis() + 50);
+        cache.cleanUp();
+        AtomicInteger calls = new AtomicInteger();
+        Function<CacheKey, CompletableFuture<WeatherResponse>> failing = key -> {
+            calls.incrementAndGet();
+            return failedFuture();
+        };
+        WeatherResponse stale = cache.get(KEY, failing).get(5, TimeUnit.SECONDS);
+        assertTrue(stale.isStale());
+        assertEquals(1, calls.get());
+
+        // Past the refresh time by age, but within the cooldown of the stale value
+        Thread.sleep(TTL.toMillis() + 50);
+        for (int i = 0; i < 20; i++) {
+            CompletableFuture<WeatherResponse> cached = cache.getIfPresent(KEY);
+            cache.revalidateIfDue(KEY, cached, failing);
+            assertTrue(cached.get(5, TimeUnit.SECONDS).isStale());
+            Thread.sleep(5);
+        }
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void entryPastRefreshTimeIsRevalidatedOnce() throws Exception {
+        cache = CacheFactory.createShared(new CacheConfigurer()
+            .ttl(TTL)
+            .staleWhileRevalidate(STALE_WINDOW)
+            .staleIfError(Duration.ofMinutes(1)));
+        cache.get(KEY, key -> CompletableFuture.completedFuture(response())).get(5, TimeUnit.SECONDS);
+
+        Thread.sleep(TTL.toMillis() + 50);
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<WeatherResponse> reload = new CompletableFuture<>();
+        for (int i = 0; i < 20; i++) {
+            cache.revalidateIfDue(KEY, cache.getIfPresent(KEY), key -> {
+                calls.incrementAndGet();
+                return reload;
+            });
+        }
+        reload.complete(response());
+
+        assertEquals(1, calls.get());
+    }
+
+    private static CompletableFuture<WeatherResponse> failedFuture() {
+        CompletableFuture<WeatherResponse> future = new CompletableFuture<>();
+        future.completeExceptionally(new InternalApiException(503, "Service Unavailable", "outage"));
+        return future;
+    }
+
+    private static WeatherResponse response() {
+        return new WeatherResponse(new Weather("Clouds", "overcast clouds"), new Temperature(12.5, 11.0), 10_000,
+            new Wind(4.1), 1_700_000_000L, new System(1_699_990_000L, 1_700_020_000L), 0, "London", false);
+    }
+}
@@ -0,0 +1,109 @@
+package ru.golubev.openweathersdk.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+
+    private static final long TICK_MILLIS = 10;
+    private static final int WHEEL_SIZE = 16;
+    private static final long REVOLUTION_MILLIS = TICK_MILLIS * WHEEL_SIZE;
+
+    private TimingWheel wheel;
+
+    @BeforeEach
+    void start() {
+        wheel = new TimingWheel(Duration.ofMillis(TICK_MILLIS), WHEEL_SIZE, 2, "test-wheel");
+    }
+
+    @AfterEach
+    void stop() {
+        wheel.close();
+    }
+
+    @Test
+    void taskDueNowRunsOnNextTick() throws Exception {
+        assertRunsAfter(0);
+    }
+
+    @Test
+    void taskDueInOneRevolutionWaitsForIt() throws Exception {
+        assertRunsAfter(REVOLUTION_MILLIS);
+    }
+
+    @Test
+    void taskDueInSeveralRevolutionsWaitsForAllOfThem() throws Exception {
+        assertRunsAfter(REVOLUTION_MILLIS * 5 / 2);
+    }
+
+    @Test
+    void cancelledTaskDoesNotRun() throws Exception {
+        AtomicBoolean ran = new AtomicBoolean();
+        TimingWheel.Timeout timeout = wheel.schedule(() -> ran.set(true), REVOLUTION_MILLIS / 2, TimeUnit.MILLISECONDS);
+
+        timeout.cancel();
+        assertTrue(timeout.isCancelled());
+        awaitEmpty();
+
+        assertFalse(ran.get());
+    }
+
+    @Test
+    void closedWheelDiscardsPendingTasksAndRejectsNewOnes() throws Exception {
+        AtomicBoolean ran = new AtomicBoolean();
+        wheel.schedule(() -> ran.set(true), REVOLUTION_MILLIS / 2, TimeUnit.MILLISECONDS);
+
+        wheel.close();
+        Thread.sleep(REVOLUTION_MILLIS);
+
+        assertFalse(ran.get());
+        assertThrows(RejectedExecutionException.class,
+            () -> wheel.schedule(() -> ran.set(true), 0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void sizeOfWheelMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class,
+            () -> new TimingWheel(Duration.ofMillis(TICK_MILLIS), 12, 1, "test-wheel"));
+    }
+
+    /**
+     * Checks that a task runs no earlier than its delay and less than a
+     * revolution later, so a miscounted round would fail.
+     */
+    private void assertRunsAfter(long delayMillis) throws Exception {
+        CountDownLatch ran = new CountDownLatch(1);
+        AtomicLong ranAt = new AtomicLong();
+        long start = System.nanoTime();
+        wheel.schedule(() -> {
+            ranAt.set(System.nanoTime());
+            ran.countDown();
+        }, delayMillis, TimeUnit.MILLISECONDS);
+
+        assertTrue(ran.await(delayMillis + TimeUnit.SECONDS.toMillis(5), TimeUnit.MILLISECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(ranAt.get() - start);
+        assertTrue(elapsedMillis >= delayMillis, () -> "ran after " + elapsedMillis + " ms");
+        assertTrue(elapsedMillis < delayMillis + REVOLUTION_MILLIS, () -> "ran after " + elapsedMillis + " ms");
+        awaitEmpty();
+    }
+
+    private void awaitEmpty() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (wheel.size() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(TICK_MILLIS);
+        }
+        assertEquals(0, wheel.size());
+    }
+}
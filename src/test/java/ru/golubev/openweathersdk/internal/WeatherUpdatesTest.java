@@ -0,0 +1,133 @@
+package ru.golubev.openweathersdk.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import ru.golubev.openweathersdk.CacheKey;
+import ru.golubev.openweathersdk.SupportedLanguage;
+import ru.golubev.openweathersdk.Units;
+import ru.golubev.openweathersdk.model.System;
+import ru.golubev.openweathersdk.model.Temperature;
+import ru.golubev.openweathersdk.model.Weather;
+import ru.golubev.openweathersdk.model.WeatherResponse;
+import ru.golubev.openweathersdk.model.Wind;
+
+class WeatherUpdatesTest {
+
+    private static final CacheKey KEY = CacheKey.of("London", SupportedLanguage.ENGLISH, Units.METRIC);
+    private static final ChangeThreshold EVERY_CHANGE = new ChangeThreshold(0, 0, 0, 0, true, 16);
+
+    @Test
+    void changedResponseReachesSubscriber() throws Exception {
+        WeatherUpdates updates = new WeatherUpdates();
+        RecordingSubscriber subscriber = new RecordingSubscriber(false);
+        updates.publisher(KEY, EVERY_CHANGE).subscribe(subscriber);
+
+        updates.publish(KEY, response(10));
+        updates.publish(KEY, response(10));
+        updates.publish(KEY, response(11));
+        updates.close();
+
+        assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(10.0, 11.0), new ArrayList<>(subscriber.temperatures));
+    }
+
+    @Test
+    void publishingWhileSubscribersCancelNeverFails() throws Exception {
+        WeatherUpdates updates = new WeatherUpdates();
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        // Cancelled subscribers make every publisher prune streams the others are offering to
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; running.get(); i++) {
+                    try {
+                        updates.publish(KEY, response(offset * 1_000_000 + i));
+                    } catch (RuntimeException e) {
+                        failures.add(e);
+                        return;
+                    }
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            while (running.get()) {
+                updates.publisher(KEY, EVERY_CHANGE).subscribe(new RecordingSubscriber(true));
+            }
+        }));
+        threads.forEach(Thread::start);
+
+        Thread.sleep(500);
+        updates.close();
+        Thread.sleep(100);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+
+        assertTrue(failures.isEmpty(), () -> "publish failed: " + failures.peek());
+    }
+
+    @Test
+    void subscriberOfClosedUpdatesIsCompleted() throws Exception {
+        WeatherUpdates updates = new WeatherUpdates();
+        updates.close();
+
+        RecordingSubscriber subscriber = new RecordingSubscriber(false);
+        updates.publisher(KEY, EVERY_CHANGE).subscribe(subscriber);
+
+        assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+    }
+
+    private static WeatherResponse response(double temperature) {
+        return new WeatherResponse(new Weather("Clouds", "overcast clouds"), new Temperature(temperature, 11.0),
+            10_000, new Wind(4.1), 1_700_000_000L, new System(1_699_990_000L, 1_700_020_000L), 0, "London", false);
+    }
+
+    private static final class RecordingSubscriber implements Flow.Subscriber<WeatherResponse> {
+
+        private final boolean cancelImmediately;
+        private final Queue<Double> temperatures = new ConcurrentLinkedQueue<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        private RecordingSubscriber(boolean cancelImmediately) {
+            this.cancelImmediately = cancelImmediately;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (cancelImmediately) {
+                subscription.cancel();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(WeatherResponse item) {
+            temperatures.add(item.getTemperature().getTemp());
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+}